@@ -0,0 +1,23 @@
+package com.example.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Response of a batch lookup. items follows the order of the requested ids,
+ * with null where an id was not found; missing lists those ids, so clients
+ * need not scan for the gaps.
+ */
+public record BatchResult<T>(List<T> items, List<UUID> missing) {
+
+    static <T> BatchResult<T> of(List<UUID> ids, List<T> items) {
+        List<UUID> missing = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (items.get(i) == null) {
+                missing.add(ids.get(i));
+            }
+        }
+        return new BatchResult<>(items, missing);
+    }
+}
@@ -2,13 +2,17 @@ package com.example.controller;
 
 import com.example.model.Cart;
 import com.example.model.Product;
+import com.example.repository.Changes;
+import com.example.repository.Page;
 import com.example.service.CartService;
 import com.example.service.MainService;
 import com.sun.tools.javac.Main;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -28,12 +32,31 @@ public class CartController {
     }
 
     @GetMapping("/")
-    public ArrayList<Cart> getCarts() {
-        return cartService.getCarts();
+    public ResponseEntity<List<Cart>> getCarts(@RequestParam(required = false) Integer limit,
+                                               @RequestParam(required = false) String after,
+                                               WebRequest request) {
+        long revision = cartService.getCartsRevision();
+        if (revision >= 0 && request.checkNotModified(String.valueOf(revision))) {
+            return null;
+        }
+        if (limit == null && after == null) {
+            return ResponseEntity.ok(cartService.getCarts());
+        }
+        Page<Cart> page = cartService.findCarts(limit != null ? limit : Integer.MAX_VALUE, after);
+        return Pages.toResponse(page);
+    }
+
+    @GetMapping("/changes")
+    public Changes<Cart> getCartChanges(@RequestParam long since) {
+        return cartService.getChangesSince(since);
     }
 
     @GetMapping("/{cartId}")
-    public Cart getCartById(@PathVariable UUID cartId) {
+    public Cart getCartById(@PathVariable UUID cartId, WebRequest request) {
+        long revision = cartService.getCartRevision(cartId);
+        if (revision >= 0 && request.checkNotModified(String.valueOf(revision))) {
+            return null;
+        }
         return cartService.getCartById(cartId);
     }
 
@@ -44,6 +67,23 @@ public class CartController {
          return "Product added to cart";
 }
 
+    @PutMapping("/{cartId}/items")
+    public String addProductsToCart(@PathVariable UUID cartId, @RequestBody List<Product> products) {
+        if (!cartService.addProductsToCart(cartId, products)) {
+            return "Cart not found";
+        }
+        return "Products added to cart";
+    }
+
+    @PutMapping("/{cartId}/items/{productId}")
+    public String setProductQuantity(@PathVariable UUID cartId, @PathVariable UUID productId,
+                                     @RequestParam int quantity) {
+        if (!cartService.setProductQuantity(cartId, productId, quantity)) {
+            return "Product not in cart";
+        }
+        return "Quantity updated";
+    }
+
     @DeleteMapping("/delete/{cartId}")
     public String deleteCartById(@PathVariable UUID cartId) {
         cartService.deleteCartById(cartId);
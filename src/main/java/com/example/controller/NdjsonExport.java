@@ -0,0 +1,32 @@
+package com.example.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Iterator;
+
+/**
+ * Writes a whole collection as newline-delimited JSON, one record per line,
+ * straight from the repository's iterator to the response stream. Nothing
+ * is collected first, so memory does not grow with the collection and the
+ * first record goes out as soon as it is serialized.
+ */
+final class NdjsonExport {
+
+    private NdjsonExport() {}
+
+    static ResponseEntity<StreamingResponseBody> toResponse(Iterator<?> records, ObjectMapper objectMapper) {
+        ObjectWriter writer = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        StreamingResponseBody body = out -> {
+            while (records.hasNext()) {
+                writer.writeValue(out, records.next());
+                out.write('\n');
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+}
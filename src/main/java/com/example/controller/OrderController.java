@@ -2,12 +2,18 @@ package com.example.controller;
 
 import com.example.exceptions.order.OrderNotFoundException;
 import com.example.model.Order;
+import com.example.repository.Page;
 import com.example.service.MainService;
 import com.example.service.OrderService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -15,10 +21,12 @@ import java.util.UUID;
 public class OrderController {
 
     private final OrderService orderService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public OrderController(MainService<Order> orderService) {
+    public OrderController(MainService<Order> orderService, ObjectMapper objectMapper) {
         this.orderService = (OrderService) orderService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping("/")
@@ -26,8 +34,17 @@ public class OrderController {
         orderService.addOrder((order));
     }
 
+    @PostMapping("/batch")
+    public BatchResult<Order> getOrdersByIds(@RequestBody List<UUID> orderIds) {
+        return BatchResult.of(orderIds, orderService.getOrdersByIds(orderIds));
+    }
+
     @GetMapping("/{orderId}")
-    public Order getOrderById(@PathVariable UUID orderId){
+    public Order getOrderById(@PathVariable UUID orderId, WebRequest request){
+      long revision = orderService.getOrderRevision(orderId);
+      if (revision >= 0 && request.checkNotModified(String.valueOf(revision))) {
+        return null;
+      }
       try{
         return orderService.getOrderById((orderId));
       }catch (OrderNotFoundException e){
@@ -37,8 +54,25 @@ public class OrderController {
     }
 
     @GetMapping("/")
-    public ArrayList<Order> getOrders(){
-        return orderService.getOrders();
+    public ResponseEntity<List<Order>> getOrders(@RequestParam(required = false) Double minTotal,
+                                                 @RequestParam(required = false) Double maxTotal,
+                                                 @RequestParam(required = false) Integer limit,
+                                                 @RequestParam(required = false) String after,
+                                                 WebRequest request){
+        long revision = orderService.getOrdersRevision();
+        if (revision >= 0 && request.checkNotModified(String.valueOf(revision))) {
+            return null;
+        }
+        if (minTotal == null && maxTotal == null && limit == null && after == null) {
+            return ResponseEntity.ok(orderService.getOrders());
+        }
+        Page<Order> page = orderService.findOrders(minTotal, maxTotal, limit != null ? limit : Integer.MAX_VALUE, after);
+        return Pages.toResponse(page);
+    }
+
+    @GetMapping(value = "/", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportOrders(){
+        return NdjsonExport.toResponse(orderService.iterateOrders(), objectMapper);
     }
 
     @DeleteMapping("/delete/{orderId}")
@@ -0,0 +1,26 @@
+package com.example.controller;
+
+import com.example.repository.Page;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+
+/**
+ * Turns a repository page into a list response. The body stays a plain JSON
+ * array; the cursor for the next page, if any, goes in the X-Next-Cursor
+ * header and is passed back as the "after" parameter.
+ */
+final class Pages {
+
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private Pages() {}
+
+    static <R> ResponseEntity<List<R>> toResponse(Page<R> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.next() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.next());
+        }
+        return response.body(page.items());
+    }
+}
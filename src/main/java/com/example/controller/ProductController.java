@@ -3,22 +3,40 @@ package com.example.controller;
 import com.example.service.MainService;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import com.example.model.Product;
+import com.example.repository.Changes;
+import com.example.repository.Page;
+import com.example.service.CatalogImportService;
+import com.example.service.ImportJob;
+import com.example.service.ProductRecord;
 import com.example.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 @RestController
 @RequestMapping("/product")
 public class ProductController {
 
     private final ProductService productService;
+    private final ObjectMapper objectMapper;
+    private final ProductJsonCache jsonCache;
+    private final CatalogImportService importService;
 
     @Autowired
-    public ProductController(MainService<Product> productService) {
+    public ProductController(MainService<Product> productService, ObjectMapper objectMapper,
+                             CatalogImportService importService) {
         this.productService = (ProductService) productService;
+        this.importService = importService;
+        this.objectMapper = objectMapper;
+        this.jsonCache = new ProductJsonCache(objectMapper);
     }
 
     @PostMapping("/")
@@ -27,13 +45,80 @@ public class ProductController {
     }
 
     @GetMapping("/")
-    public List<Product> getProducts() {
-        return productService.getProducts();
+    public ResponseEntity<?> getProducts(@RequestParam(required = false) Double minPrice,
+                                         @RequestParam(required = false) Double maxPrice,
+                                         @RequestParam(required = false) Integer limit,
+                                         @RequestParam(required = false) String after,
+                                         WebRequest request) {
+        // Revision first: products read after it are at least that new
+        long revision = productService.getCatalogRevision();
+        if (revision >= 0 && request.checkNotModified(String.valueOf(revision))) {
+            return null;
+        }
+        if (minPrice == null && maxPrice == null && limit == null && after == null) {
+            return revision >= 0
+                    ? json(jsonCache.catalog(revision, productService::getProducts))
+                    : ResponseEntity.ok(productService.getProducts());
+        }
+        Page<Product> page = productService.findProducts(minPrice, maxPrice, limit != null ? limit : Integer.MAX_VALUE, after);
+        return Pages.toResponse(page);
+    }
+
+    @GetMapping(value = "/", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportProducts() {
+        return NdjsonExport.toResponse(productService.iterateProducts(), objectMapper);
+    }
+
+    @PostMapping("/bulk")
+    public List<Product> addProducts(@RequestBody List<ProductRecord> products) {
+        return productService.addProducts(ProductRecord.toProducts(products));
+    }
+
+    /**
+     * Imports a file from the import directory in the background; poll
+     * GET /product/import/{jobId} for progress.
+     */
+    @PostMapping(value = "/import", params = "file")
+    public ResponseEntity<ImportJob> startImport(@RequestParam String file) {
+        return ResponseEntity.accepted().body(importService.startImport(file));
+    }
+
+    /**
+     * Imports the request body, NDJSON or a JSON array, as it arrives and
+     * returns the finished job.
+     */
+    @PostMapping(value = "/import", params = "!file")
+    public ImportJob importProducts(InputStream body) {
+        return importService.importFrom(body);
+    }
+
+    @GetMapping("/import/{jobId}")
+    public ImportJob getImport(@PathVariable UUID jobId) {
+        return importService.getJob(jobId);
+    }
+
+    @PostMapping("/batch")
+    public BatchResult<Product> getProductsByIds(@RequestBody List<UUID> productIds) {
+        return BatchResult.of(productIds, productService.getProductsByIds(productIds));
+    }
+
+    @GetMapping("/changes")
+    public Changes<Product> getProductChanges(@RequestParam long since) {
+        return productService.getChangesSince(since);
     }
 
     @GetMapping("/{productId}")
-    public Product getProductById(@PathVariable UUID productId) {
-        return productService.getProductById(productId);
+    public ResponseEntity<byte[]> getProductById(@PathVariable UUID productId, WebRequest request) {
+        long revision = productService.getProductRevision(productId);
+        if (revision >= 0 && request.checkNotModified(String.valueOf(revision))) {
+            return null;
+        }
+        Product product = productService.getProductById(productId);
+        if (product == null) {
+            jsonCache.evict(productId);
+            return ResponseEntity.ok().build();
+        }
+        return json(jsonCache.product(product));
     }
 
     @PutMapping("/update/{productId}")
@@ -57,6 +142,11 @@ public class ProductController {
     @DeleteMapping("/delete/{productId}")
     public String deleteProductById(@PathVariable UUID productId) {
         productService.deleteProductById(productId);
+        jsonCache.evict(productId);
         return "Product deleted successfully";
     }
+
+    private ResponseEntity<byte[]> json(byte[] body) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
 }
@@ -0,0 +1,71 @@
+package com.example.controller;
+
+import com.example.model.Product;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * UTF-8 JSON of the catalog and of single products, encoded once and served
+ * as is until the data behind it changes.
+ *
+ * The whole list is tied to the repository revision it was read at, so any
+ * write (through any endpoint or service, or to the file itself) makes it
+ * stale. A single product is tied to the stored instance it was encoded
+ * from: the repository replaces that instance on every write, so an identity
+ * check is enough.
+ */
+final class ProductJsonCache {
+
+    private record Entry(Object source, byte[] json) {}
+
+    private final ObjectWriter writer;
+    private volatile Entry catalog;
+    private final ConcurrentHashMap<UUID, Entry> products = new ConcurrentHashMap<>();
+
+    ProductJsonCache(ObjectMapper objectMapper) {
+        this.writer = objectMapper.writer();
+    }
+
+    /**
+     * @param revision the repository revision, read before the products
+     */
+    byte[] catalog(long revision, Supplier<List<Product>> products) {
+        Entry current = catalog;
+        if (current != null && current.source().equals(revision)) {
+            return current.json();
+        }
+        byte[] json = encode(products.get());
+        catalog = new Entry(revision, json);
+        return json;
+    }
+
+    byte[] product(Product product) {
+        Entry current = products.get(product.getId());
+        if (current != null && current.source() == product) {
+            return current.json();
+        }
+        byte[] json = encode(product);
+        products.put(product.getId(), new Entry(product, json));
+        return json;
+    }
+
+    void evict(UUID productId) {
+        if (productId != null) {
+            products.remove(productId);
+        }
+    }
+
+    private byte[] encode(Object value) {
+        try {
+            return writer.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize products", e);
+        }
+    }
+}
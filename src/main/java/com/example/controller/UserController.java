@@ -4,14 +4,16 @@ import com.example.model.Cart;
 import com.example.model.Order;
 import com.example.model.Product;
 import com.example.model.User;
+import com.example.repository.Page;
 import com.example.service.CartService;
 import com.example.service.MainService;
 import com.example.service.ProductService;
 import com.example.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -36,12 +38,32 @@ public class UserController {
     }
 
     @GetMapping("/")
-    public ArrayList<User> getUsers() {
-        return userService.getUsers();
+    public ResponseEntity<List<User>> getUsers(@RequestParam(required = false) Boolean hasOrders,
+                                               @RequestParam(required = false) Integer limit,
+                                               @RequestParam(required = false) String after,
+                                               WebRequest request) {
+        long revision = userService.getUsersRevision();
+        if (revision >= 0 && request.checkNotModified(String.valueOf(revision))) {
+            return null;
+        }
+        if (hasOrders == null && limit == null && after == null) {
+            return ResponseEntity.ok(userService.getUsers());
+        }
+        Page<User> page = userService.findUsers(hasOrders, limit != null ? limit : Integer.MAX_VALUE, after);
+        return Pages.toResponse(page);
+    }
+
+    @PostMapping("/batch")
+    public BatchResult<User> getUsersByIds(@RequestBody List<UUID> userIds) {
+        return BatchResult.of(userIds, userService.getUsersByIds(userIds));
     }
 
     @GetMapping("/{userId}")
-    public User getUserById(@PathVariable UUID userId) {
+    public User getUserById(@PathVariable UUID userId, WebRequest request) {
+        long revision = userService.getUserRevision(userId);
+        if (revision >= 0 && request.checkNotModified(String.valueOf(revision))) {
+            return null;
+        }
         return userService.getUserById(userId);
     }
 
@@ -70,11 +92,7 @@ public class UserController {
 
     @PutMapping("/addProductToCart")
     public String addProductToCart(@RequestParam UUID userId, @RequestParam UUID productId) {
-        Cart cart = cartService.getCartByUserId(userId);
-        if (cart == null) {
-            cart = new Cart(userId, new ArrayList<>());
-            cartService.addCart(cart);
-        }
+        Cart cart = cartService.getOrCreateCartByUserId(userId);
         Product product = productService.getProductById(productId);
         if (product == null) {
             return "Product not found";
@@ -86,7 +104,7 @@ public class UserController {
     @PutMapping("/deleteProductFromCart")
     public String deleteProductFromCart(@RequestParam UUID userId, @RequestParam UUID productId) {
         Cart cart = cartService.getCartByUserId(userId);
-        if (cart == null || cart.getProducts().isEmpty()) {
+        if (cart == null || cart.getLines().isEmpty()) {
             return "Cart is empty";
         }
         Product product = productService.getProductById(productId);
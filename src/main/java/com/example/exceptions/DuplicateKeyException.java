@@ -0,0 +1,12 @@
+package com.example.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class DuplicateKeyException extends RuntimeException {
+
+    public DuplicateKeyException(String msg) {
+      super(msg);
+    }
+}
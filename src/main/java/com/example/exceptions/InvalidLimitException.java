@@ -0,0 +1,12 @@
+package com.example.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidLimitException extends RuntimeException {
+
+    public InvalidLimitException(String msg) {
+      super(msg);
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class WriteTimeoutException extends RuntimeException {
+
+    public WriteTimeoutException(String msg, Throwable cause) {
+      super(msg, cause);
+    }
+}
@@ -2,32 +2,41 @@ package com.example.model;
 
 import org.springframework.stereotype.Component;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.UUID;
 
 @Component
-public class Cart {
+public class Cart implements Versioned {
 
     private UUID id;
+    private long version;
     private UUID userId;
-    private List<Product> products = new ArrayList<>();
+    // One line per product id, in the order they were first added, so adding
+    // a product again or removing it is a single map operation
+    private final LinkedHashMap<UUID, CartLine> lines = new LinkedHashMap<>();
+    private final List<Product> products = new ProductsView();
 
     public Cart() {
-        this.id = UUID.randomUUID();
+        this.id = Ids.next();
     }
 
     public Cart(UUID userId, List<Product> products) {
-        this.id = UUID.randomUUID();
+        this.id = Ids.next();
         this.userId = userId;
-        this.products = products;
+        setProducts(products);
 
     }
 
     public Cart(UUID id, UUID userId, List<Product> products) {
         this.id = id;
         this.userId = userId;
-        this.products = products;
+        setProducts(products);
     }
 
 
@@ -39,6 +48,14 @@ public class Cart {
         this.id = id;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public UUID getUserId() {
         return userId;
     }
@@ -47,11 +64,173 @@ public class Cart {
         this.userId = userId;
     }
 
+    public Collection<CartLine> getLines() {
+        return lines.values();
+    }
+
+    public void setLines(List<CartLine> lines) {
+        this.lines.clear();
+        if (lines != null) {
+            for (CartLine line : lines) {
+                addProduct(line.getProduct(), line.getQuantity());
+            }
+        }
+    }
+
+    /**
+     * Every unit in the cart, each product repeated as many times as its
+     * quantity. A live view: adding to it adds one of the product and
+     * removing from it takes one away. Still part of the JSON clients see;
+     * CartRepository stores only the lines.
+     */
     public List<Product> getProducts() {
         return products;
     }
 
     public void setProducts(List<Product> products) {
-        this.products = products;
+        List<Product> units = products != null ? new ArrayList<>(products) : List.of();
+        lines.clear();
+        for (Product product : units) {
+            addProduct(product);
+        }
+    }
+
+    public void addProduct(Product product) {
+        addProduct(product, 1);
+    }
+
+    /**
+     * Adds to the product's line, creating it if needed; the line keeps the
+     * latest snapshot of the product.
+     */
+    public void addProduct(Product product, int quantity) {
+        if (product == null || quantity <= 0) {
+            return;
+        }
+        CartLine line = lines.get(product.getId());
+        if (line == null) {
+            lines.put(product.getId(), new CartLine(product, quantity));
+        } else {
+            line.setProduct(product);
+            line.setQuantity(line.getQuantity() + quantity);
+        }
+    }
+
+    /**
+     * @return false if the product was not in the cart
+     */
+    public boolean removeProduct(UUID productId) {
+        return lines.remove(productId) != null;
+    }
+
+    public int getQuantity(UUID productId) {
+        CartLine line = lines.get(productId);
+        return line != null ? line.getQuantity() : 0;
+    }
+
+    /**
+     * Sets how many of a product already in the cart there are; zero or less
+     * removes it.
+     *
+     * @return false if the product is not in the cart
+     */
+    public boolean setQuantity(UUID productId, int quantity) {
+        CartLine line = lines.get(productId);
+        if (line == null) {
+            return false;
+        }
+        if (quantity <= 0) {
+            lines.remove(productId);
+        } else {
+            line.setQuantity(quantity);
+        }
+        return true;
+    }
+
+    private final class ProductsView extends AbstractList<Product> {
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (CartLine line : lines.values()) {
+                size += line.getQuantity();
+            }
+            return size;
+        }
+
+        @Override
+        public Product get(int index) {
+            if (index >= 0) {
+                for (CartLine line : lines.values()) {
+                    if (index < line.getQuantity()) {
+                        return line.getProduct();
+                    }
+                    index -= line.getQuantity();
+                }
+            }
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+
+        // Units of one product are interchangeable, so the index only matters
+        // for which product is removed
+        @Override
+        public void add(int index, Product product) {
+            addProduct(product);
+        }
+
+        @Override
+        public Product remove(int index) {
+            Product product = get(index);
+            setQuantity(product.getId(), getQuantity(product.getId()) - 1);
+            return product;
+        }
+
+        @Override
+        public void clear() {
+            lines.clear();
+        }
+
+        @Override
+        public Iterator<Product> iterator() {
+            return new Iterator<>() {
+                private final Iterator<CartLine> lineIterator = lines.values().iterator();
+                private CartLine line;
+                private int returned;
+                private boolean canRemove;
+
+                @Override
+                public boolean hasNext() {
+                    return (line != null && returned < line.getQuantity()) || lineIterator.hasNext();
+                }
+
+                @Override
+                public Product next() {
+                    if (line == null || returned >= line.getQuantity()) {
+                        if (!lineIterator.hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        line = lineIterator.next();
+                        returned = 0;
+                    }
+                    returned++;
+                    canRemove = true;
+                    return line.getProduct();
+                }
+
+                @Override
+                public void remove() {
+                    if (!canRemove) {
+                        throw new IllegalStateException();
+                    }
+                    canRemove = false;
+                    returned--;
+                    line.setQuantity(line.getQuantity() - 1);
+                    if (line.getQuantity() == 0) {
+                        lineIterator.remove();
+                        line = null;
+                    }
+                }
+            };
+        }
     }
 }
@@ -0,0 +1,36 @@
+package com.example.model;
+
+/**
+ * One distinct product in a cart and how many of it there are. The product
+ * is the snapshot taken when it was last added; checkout prices the line
+ * from the catalog when the product is still in it.
+ */
+public class CartLine {
+
+    private Product product;
+    private int quantity;
+
+    public CartLine() {
+    }
+
+    public CartLine(Product product, int quantity) {
+        this.product = product;
+        this.quantity = quantity;
+    }
+
+    public Product getProduct() {
+        return product;
+    }
+
+    public void setProduct(Product product) {
+        this.product = product;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.model;
+
+import java.util.UUID;
+
+/**
+ * Source of new entity ids; see {@link Ids}.
+ */
+@FunctionalInterface
+public interface IdGenerator {
+
+    /** Random version 4 ids, as entities used before ids were time ordered. */
+    IdGenerator RANDOM = UUID::randomUUID;
+
+    UUID next();
+}
@@ -0,0 +1,25 @@
+package com.example.model;
+
+import java.util.UUID;
+
+/**
+ * Where entities get their ids from. Time-ordered UUIDv7 by default; another
+ * {@link IdGenerator} can be plugged in with {@link #use(IdGenerator)}.
+ */
+public final class Ids {
+
+    private static volatile IdGenerator generator = new UuidV7Generator();
+
+    private Ids() {}
+
+    public static UUID next() {
+        return generator.next();
+    }
+
+    public static void use(IdGenerator idGenerator) {
+        if (idGenerator == null) {
+            throw new IllegalArgumentException("Id generator cannot be null");
+        }
+        generator = idGenerator;
+    }
+}
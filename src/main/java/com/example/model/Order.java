@@ -7,8 +7,9 @@ import java.util.List;
 import java.util.UUID;
 
 @Component
-public class Order {
-  private UUID id = UUID.randomUUID();
+public class Order implements Versioned {
+  private UUID id = Ids.next();
+  private long version;
 
   private UUID userId;
 
@@ -47,6 +48,14 @@ public class Order {
     this.id = id;
   }
 
+  public long getVersion() {
+    return version;
+  }
+
+  public void setVersion(long version) {
+    this.version = version;
+  }
+
   public UUID getUserId() {
     return userId;
   }
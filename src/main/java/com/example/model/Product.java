@@ -4,14 +4,15 @@ import org.springframework.stereotype.Component;
 import java.util.UUID;
 
 @Component
-public class Product {
+public class Product implements Versioned {
     private UUID id;
+    private long version;
     private String name;
     private double price;
 
     // Default constructor
     public Product() {
-        this.id = UUID.randomUUID();
+        this.id = Ids.next();
     }
 
     // Constructor with all parameters
@@ -23,7 +24,7 @@ public class Product {
 
     // Constructor without ID (ID will be auto-generated)
     public Product(String name, double price) {
-        this.id = UUID.randomUUID();
+        this.id = Ids.next();
         this.name = name;
         this.price = price;
     }
@@ -37,6 +38,14 @@ public class Product {
         this.id = id;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public String getName() {
         return name;
     }
@@ -1,30 +1,35 @@
 package com.example.model;
 
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.databind.JsonNode;
 import org.springframework.stereotype.Component;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
 @Component
-public class User {
+public class User implements Versioned {
     private UUID id;
+    private long version;
     private String name;
-    private List<Order> orders = new ArrayList<>();
+    // Only the ids; the orders themselves live in the order repository
+    private List<UUID> orderIds = new ArrayList<>();
 
     public User() {
-        this.id = UUID.randomUUID();
+        this.id = Ids.next();
     }
 
-    public User(String name, List<Order> orders) {
-        this.id = UUID.randomUUID();
+    public User(String name, List<UUID> orderIds) {
+        this.id = Ids.next();
         this.name = name;
-        this.orders = orders;
+        this.orderIds = orderIds;
     }
 
-    public User(UUID id, String name, List<Order> orders) {
+    public User(UUID id, String name, List<UUID> orderIds) {
         this.id = id;
         this.name = name;
-        this.orders = orders;
+        this.orderIds = orderIds;
     }
 
     public UUID getId() {
@@ -35,6 +40,14 @@ public class User {
         this.id = id;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public String getName() {
         return name;
     }
@@ -43,11 +56,30 @@ public class User {
         this.name = name;
     }
 
-    public List<Order> getOrders() {
-        return orders;
+    @JsonGetter("orders")
+    public List<UUID> getOrderIds() {
+        return orderIds;
+    }
+
+    public void setOrderIds(List<UUID> orderIds) {
+        this.orderIds = orderIds;
     }
 
-    public void setOrders(List<Order> orders) {
-        this.orders = orders;
+    /**
+     * Reads the stored order ids. Users written before orders were stored by
+     * id embed whole orders; only their ids are kept.
+     */
+    @JsonSetter("orders")
+    private void readOrders(List<JsonNode> orders) {
+        orderIds = new ArrayList<>(orders != null ? orders.size() : 0);
+        if (orders == null) {
+            return;
+        }
+        for (JsonNode order : orders) {
+            JsonNode orderId = order.isObject() ? order.get("id") : order;
+            if (orderId != null && orderId.isTextual()) {
+                orderIds.add(UUID.fromString(orderId.asText()));
+            }
+        }
     }
 }
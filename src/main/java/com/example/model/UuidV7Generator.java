@@ -0,0 +1,46 @@
+package com.example.model;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates time-ordered version 7 UUIDs (RFC 9562): 48 bits of Unix time in
+ * milliseconds, then a 12-bit sequence, then 62 random bits.
+ *
+ * Ids are strictly increasing across all threads. Within one millisecond the
+ * sequence counts up from a random start; if it runs out, the timestamp is
+ * moved on by one millisecond rather than waiting. The last timestamp and
+ * sequence are kept in one AtomicLong, so generating an id is a
+ * compare-and-set with no lock, and the random bits come from
+ * ThreadLocalRandom rather than a shared SecureRandom. The ids are therefore
+ * unique and ordered but not unguessable.
+ */
+public final class UuidV7Generator implements IdGenerator {
+
+    private static final int SEQUENCE_BITS = 12;
+    private static final long VERSION_7 = 0x7000L;
+    private static final long VARIANT = 0x8000_0000_0000_0000L;
+    private static final long VARIANT_MASK = 0x3FFF_FFFF_FFFF_FFFFL;
+
+    // Unix millis << 12 | sequence of the last id handed out
+    private final AtomicLong last = new AtomicLong();
+
+    @Override
+    public UUID next() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long previous;
+        long current;
+        do {
+            previous = last.get();
+            // Start each millisecond in the lower half, leaving room to count up
+            current = System.currentTimeMillis() << SEQUENCE_BITS | random.nextInt(1 << (SEQUENCE_BITS - 1));
+            if (current <= previous) {
+                current = previous + 1;
+            }
+        } while (!last.compareAndSet(previous, current));
+        long mostSigBits = (current >>> SEQUENCE_BITS) << 16 | VERSION_7 | (current & ((1 << SEQUENCE_BITS) - 1));
+        long leastSigBits = random.nextLong() & VARIANT_MASK | VARIANT;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.model;
+
+/**
+ * An entity carrying a version stamp. The repository bumps the version on
+ * every write and uses it for compare-and-set updates.
+ */
+public interface Versioned {
+
+    long getVersion();
+
+    void setVersion(long version);
+}
@@ -1,7 +1,11 @@
 package com.example.repository;
 
+import com.example.exceptions.DuplicateKeyException;
 import com.example.model.Cart;
+import com.example.model.CartLine;
 import com.example.model.Product;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 import java.util.ArrayList;
@@ -15,7 +19,30 @@ public class CartRepository extends MainRepository<Cart> {
     @Value("${spring.application.cartDataPath}")
     private String defaultCartDataPath;
 
-    public CartRepository(){}
+    @Value("${spring.application.cartDurability:SYNC}")
+    private Durability durability;
+
+    public static final String BY_USER_ID = "userId";
+
+    private final ProductInterner productInterner;
+
+    public CartRepository(){
+        this(new ProductInterner());
+    }
+
+    @Autowired
+    CartRepository(ProductInterner productInterner) {
+        this.productInterner = productInterner;
+        registerIndex(BY_USER_ID, Cart::getUserId, true);
+        objectMapper.addMixIn(Cart.class, StoredCart.class);
+    }
+
+    // Stored carts keep only their lines; "products" is still read from
+    // files written before carts had lines
+    private abstract static class StoredCart {
+        @JsonProperty(value = "products", access = JsonProperty.Access.WRITE_ONLY)
+        abstract List<Product> getProducts();
+    }
 
     @Override
     protected String getDataPath() {
@@ -32,6 +59,54 @@ public class CartRepository extends MainRepository<Cart> {
         return Cart[].class;
     }
 
+    @Override
+    protected UUID idOf(Cart cart) {
+        return cart.getId();
+    }
+
+    @Override
+    protected Durability getDurability() {
+        return durability;
+    }
+
+    @Override
+    protected void canonicalize(Cart cart) {
+        for (CartLine line : cart.getLines()) {
+            line.setProduct(productInterner.intern(line.getProduct()));
+        }
+    }
+
+    /**
+     * Puts back what a rolled-back write added to or took from the cart, on
+     * top of whatever was added or taken since, so a failed checkout does not
+     * lose products another request added meanwhile.
+     */
+    @Override
+    protected Cart mergeRollback(Cart previous, Cart written, Cart current) {
+        if (previous == null || written == null) {
+            return null;
+        }
+        for (CartLine line : previous.getLines()) {
+            int taken = line.getQuantity() - written.getQuantity(line.getProduct().getId());
+            if (taken > 0) {
+                current.addProduct(line.getProduct(), taken);
+            }
+        }
+        for (CartLine line : written.getLines()) {
+            UUID productId = line.getProduct().getId();
+            int added = line.getQuantity() - previous.getQuantity(productId);
+            if (added > 0) {
+                current.setQuantity(productId, current.getQuantity(productId) - added);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * A user has at most one cart (the userId index is unique): adding a cart
+     * for a user who already has a different one throws
+     * {@link DuplicateKeyException}.
+     */
     public void addCart(Cart cart) {
         if (cart == null || cart.getUserId() == null) {
             throw new IllegalArgumentException("Cart cannot be null and must have a userId");
@@ -39,6 +114,29 @@ public class CartRepository extends MainRepository<Cart> {
         this.save(cart);
     }
 
+    /**
+     * Returns the user's cart, adding an empty one if there is none. When two
+     * requests race to add it, the one that loses the unique userId check
+     * returns the cart the other added.
+     */
+    public Cart getOrCreateCartByUserId(UUID userId) {
+        Cart cart = getCartByUserId(userId);
+        if (cart != null) {
+            return cart;
+        }
+        try {
+            cart = new Cart(userId, new ArrayList<>());
+            this.save(cart);
+            return cart;
+        } catch (DuplicateKeyException e) {
+            Cart existing = getCartByUserId(userId);
+            if (existing == null) {
+                throw e;
+            }
+            return existing;
+        }
+    }
+
     public ArrayList<Cart> getCarts() {
         try {
             ArrayList<Cart> carts = this.findAll();
@@ -49,62 +147,28 @@ public class CartRepository extends MainRepository<Cart> {
     }
 
     public Cart getCartById(UUID cartId) {
-        List<Cart> carts = this.findAll();
-        for (Cart cart : carts) {
-            if (cart.getId().equals(cartId)) {
-                return cart; // found
-            }
-        }
-        return null; // not found
+        return this.findById(cartId);
     }
 
     public Cart getCartByUserId(UUID userId) {
-        List<Cart> carts = this.findAll();
-        for (Cart cart : carts) {
-            if (cart.getUserId().equals(userId)) {
-                return cart; // user cart mwgooda
-            }
-        }
-        return null;
+        List<Cart> carts = this.findBy(BY_USER_ID, userId);
+        return carts.isEmpty() ? null : carts.get(0);
     }
 
     public void addProductToCart(UUID cartId, Product product) {
-        List<Cart> carts = this.findAll(); // Get all carts
-
-        for (Cart cart : carts) {
-            if (cart.getId().equals(cartId)) {
-                cart.getProducts().add(product);
-                this.saveAll((ArrayList<Cart>) carts);
-                return;
-            }
-        }
+        this.update(cartId, cart -> cart.addProduct(product));
     }
 
     public void deleteProductFromCart(UUID cartId, Product product) {
-        List<Cart> carts = this.findAll(); // Get all carts
-
-        for (Cart cart : carts) {
-            if (cart.getId().equals(cartId)) {
-                cart.getProducts().removeIf(p -> p.getId().equals(product.getId()));
-                this.saveAll((ArrayList<Cart>) carts);
-                return;
-            }
+        Cart updated = this.update(cartId, cart -> cart.removeProduct(product.getId()));
+        if (updated == null) {
+            throw new RuntimeException(" Cart not found with ID");
         }
-        throw new RuntimeException(" Cart not found with ID");
     }
 
 
     public void deleteCartById(UUID cartId) {
-        List<Cart> carts = this.findAll();
-        List<Cart> updatedCarts = new ArrayList<>();
-
-        for (Cart cart : carts) {
-            if (!cart.getId().equals(cartId)) {
-                updatedCarts.add(cart);
-            }
-        }
-
-        this.saveAll((ArrayList<Cart>) updatedCarts);
+        this.deleteById(cartId);
     }
 
 }
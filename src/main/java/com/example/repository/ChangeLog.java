@@ -0,0 +1,63 @@
+package com.example.repository;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The last few single-entity writes of a repository, by revision, so clients
+ * can fetch what changed since a revision they already have.
+ *
+ * Bounded: once full, the oldest entries are dropped and the floor moves up
+ * to them. Bulk changes (a load or a saveAll) are not logged one by one; they
+ * clear the log and move the floor to their revision. A client that is behind
+ * the floor has to resync in full. Guarded by the repository's write lock.
+ */
+final class ChangeLog<T> {
+
+    private record Entry<T>(long revision, UUID id, T entity) {}
+
+    private final int capacity;
+    private final ArrayDeque<Entry<T>> entries = new ArrayDeque<>();
+    private long floor = Long.MAX_VALUE;
+
+    ChangeLog(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * @param entity the entity as written, or null for a delete
+     */
+    void append(long revision, UUID id, T entity) {
+        if (entries.size() == capacity) {
+            floor = entries.removeFirst().revision();
+        }
+        entries.addLast(new Entry<>(revision, id, entity));
+    }
+
+    void reset(long revision) {
+        entries.clear();
+        floor = revision;
+    }
+
+    /**
+     * The latest state of every entity written after the revision, null
+     * marking a delete, in order of their last write; or null if the log no
+     * longer reaches back that far.
+     */
+    Map<UUID, T> since(long revision) {
+        if (revision < floor) {
+            return null;
+        }
+        LinkedHashMap<UUID, T> changes = new LinkedHashMap<>();
+        for (Entry<T> entry : entries) {
+            if (entry.revision() > revision) {
+                // Re-insert so the order is that of each entity's last write
+                changes.remove(entry.id());
+                changes.put(entry.id(), entry.entity());
+            }
+        }
+        return changes;
+    }
+}
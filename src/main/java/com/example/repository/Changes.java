@@ -0,0 +1,12 @@
+package com.example.repository;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * What changed in a repository since a given revision: the current state of
+ * every entity written since then and the ids of those deleted. If the
+ * change log no longer reaches back that far, fullResync is set and upserts
+ * holds every entity instead. Pass revision as "since" next time.
+ */
+public record Changes<T>(long revision, boolean fullResync, List<T> upserts, List<UUID> deleted) {}
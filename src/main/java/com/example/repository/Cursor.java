@@ -0,0 +1,30 @@
+package com.example.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+import com.example.exceptions.InvalidCursorException;
+
+/**
+ * Position of the last row of a page, handed to clients as an opaque token.
+ * The id lets the next page find the row again after a reload renumbered
+ * the rows; the position is the fallback if the row was deleted.
+ */
+record Cursor(long position, UUID id) {
+
+    String encode() {
+        String raw = position + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Cursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            return new Cursor(Long.parseLong(raw.substring(0, separator)), UUID.fromString(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidCursorException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.repository;
+
+/**
+ * When a repository write returns to the caller.
+ *
+ * A write is applied to the repository's store before it goes to disk, and is
+ * never taken back because the disk write failed: the writer keeps retrying
+ * it. A SYNC or BATCHED caller returns once its write is on disk, or gets a
+ * WriteTimeoutException (503) if that takes longer than
+ * spring.application.writeTimeoutMs; the write may still land afterwards.
+ */
+public enum Durability {
+    /** The caller waits until its own write has been fsynced; the writer flushes immediately. */
+    SYNC,
+    /** The writer flushes on a fixed interval and the caller waits for the next flush. */
+    BATCHED,
+    /** The writer flushes on a fixed interval and the caller does not wait (write-behind). */
+    ASYNC
+}
@@ -0,0 +1,114 @@
+package com.example.repository;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * A condition on one top-level field, for
+ * {@link MainRepository#scan(List, Function, int)}.
+ *
+ * Each condition can be checked two ways: on the field's JSON value while a
+ * file is being streamed, so records that fail are skipped without being
+ * built, and on an entity already in memory. Records that lack the field do
+ * not match.
+ */
+public final class FieldFilter<T> {
+
+    interface ValueTest {
+        /**
+         * @param value positioned on the first token of the field's value
+         */
+        boolean test(JsonParser value) throws IOException;
+    }
+
+    private final String field;
+    private final ValueTest valueTest;
+    private final Predicate<T> entityTest;
+
+    private FieldFilter(String field, ValueTest valueTest, Predicate<T> entityTest) {
+        this.field = field;
+        this.valueTest = valueTest;
+        this.entityTest = entityTest;
+    }
+
+    /**
+     * The field is a number within [min, max]; a null bound is open.
+     */
+    public static <T> FieldFilter<T> between(String field, ToDoubleFunction<T> getter, Double min, Double max) {
+        return new FieldFilter<>(field,
+                value -> value.currentToken().isNumeric() && inRange(value.getDoubleValue(), min, max),
+                entity -> inRange(getter.applyAsDouble(entity), min, max));
+    }
+
+    /**
+     * The field is an array (collection) that is empty or not, as asked.
+     */
+    public static <T> FieldFilter<T> hasElements(String field, Function<T, Collection<?>> getter, boolean nonEmpty) {
+        return new FieldFilter<>(field,
+                value -> value.currentToken() == JsonToken.START_ARRAY
+                        && (value.nextToken() != JsonToken.END_ARRAY) == nonEmpty,
+                entity -> {
+                    Collection<?> elements = getter.apply(entity);
+                    return (elements != null && !elements.isEmpty()) == nonEmpty;
+                });
+    }
+
+    /**
+     * The field is a scalar whose text equals the value's toString().
+     */
+    public static <T> FieldFilter<T> equalTo(String field, Function<T, ?> getter, Object value) {
+        String text = value.toString();
+        return new FieldFilter<>(field,
+                json -> json.currentToken().isScalarValue() && text.equals(json.getText()),
+                entity -> Objects.equals(getter.apply(entity), value));
+    }
+
+    /**
+     * The field is a scalar whose text equals one of the values' toString().
+     */
+    public static <T> FieldFilter<T> in(String field, Function<T, ?> getter, Collection<?> values) {
+        Set<String> texts = new HashSet<>();
+        for (Object value : values) {
+            texts.add(value.toString());
+        }
+        Set<Object> valueSet = new HashSet<>(values);
+        return new FieldFilter<>(field,
+                json -> json.currentToken().isScalarValue() && texts.contains(json.getText()),
+                entity -> valueSet.contains(getter.apply(entity)));
+    }
+
+    String getField() {
+        return field;
+    }
+
+    boolean test(JsonParser value) throws IOException {
+        return valueTest.test(value);
+    }
+
+    boolean test(T entity) {
+        return entityTest.test(entity);
+    }
+
+    static <T> boolean matchesAll(List<FieldFilter<T>> filters, T entity) {
+        for (FieldFilter<T> filter : filters) {
+            if (!filter.test(entity)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean inRange(double number, Double min, Double max) {
+        return (min == null || number >= min) && (max == null || number <= max);
+    }
+}
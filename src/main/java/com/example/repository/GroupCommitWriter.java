@@ -0,0 +1,220 @@
+package com.example.repository;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.example.exceptions.WriteTimeoutException;
+
+/**
+ * The single disk writer of a repository.
+ *
+ * Request threads submit their mutation and get a ticket back; the writer
+ * thread takes everything that queued up since its last flush and hands it to
+ * the repository as one batch (one write + fsync), then releases every ticket
+ * in that batch at once. How long a caller waits depends on the
+ * {@link Durability} mode.
+ *
+ * A failed batch is logged, put back at the head of the queue and retried.
+ * Its changes are already in the repository's store, so they are never taken
+ * back; a caller that has waited longer than the timeout gets a
+ * {@link WriteTimeoutException} (503) while the retries go on. Once the writer
+ * is closed it stops retrying, and whatever has not been written by then is
+ * lost.
+ */
+final class GroupCommitWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(GroupCommitWriter.class);
+
+    interface BatchWriter {
+        /**
+         * Writes one batch. Entries are journal records, or null where a full
+         * snapshot of the store was requested.
+         */
+        void write(List<byte[]> batch) throws IOException;
+    }
+
+    private final String name;
+    private final Durability durability;
+    private final long intervalMillis;
+    private final long timeoutMillis;
+    private final BatchWriter batchWriter;
+
+    private final Object lock = new Object();
+    private final ArrayList<byte[]> pending = new ArrayList<>();
+    // Written under the lock; volatile so isIdle() can read them without it
+    private volatile long submitted;
+    private volatile long flushed;
+    private IOException failure;
+    private boolean closed;
+    private Thread thread;
+
+    GroupCommitWriter(String name, Durability durability, long intervalMillis, long timeoutMillis,
+                      BatchWriter batchWriter) {
+        this.name = name;
+        this.durability = durability;
+        this.intervalMillis = Math.max(1, intervalMillis);
+        this.timeoutMillis = Math.max(1, timeoutMillis);
+        this.batchWriter = batchWriter;
+    }
+
+    /**
+     * Queues one entry and returns its ticket; pass null to ask for a snapshot.
+     */
+    long submit(byte[] record) {
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException(name + " is closed");
+            }
+            if (thread == null) {
+                thread = new Thread(this::run, name);
+                thread.setDaemon(true);
+                thread.start();
+            }
+            pending.add(record);
+            lock.notifyAll();
+            return ++submitted;
+        }
+    }
+
+    /**
+     * Queues the entries so they are written in the same batch, and returns the
+     * ticket of the last one.
+     */
+    long submitAll(List<byte[]> records) {
+        synchronized (lock) {
+            long ticket = submitted;
+            for (byte[] record : records) {
+                ticket = submit(record);
+            }
+            return ticket;
+        }
+    }
+
+    /**
+     * Waits as the durability mode requires: SYNC and BATCHED callers block
+     * until their ticket is on disk, ASYNC callers return straight away.
+     */
+    void awaitDurable(long ticket) {
+        if (durability != Durability.ASYNC) {
+            await(ticket);
+        }
+    }
+
+    /**
+     * Waits until everything submitted so far has been written.
+     */
+    void drain() {
+        long ticket;
+        synchronized (lock) {
+            ticket = submitted;
+        }
+        await(ticket);
+    }
+
+    /**
+     * Lock-free, for the read path. Reading flushed before submitted can only
+     * err towards busy, since submitted never falls behind flushed.
+     */
+    boolean isIdle() {
+        long written = flushed;
+        return written == submitted;
+    }
+
+    /**
+     * Waits until the given ticket is on disk, whatever the durability mode.
+     *
+     * @throws WriteTimeoutException if it is not within the timeout, or the
+     *                               writer was closed before writing it
+     */
+    void await(long ticket) {
+        synchronized (lock) {
+            boolean interrupted = false;
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            long left;
+            while (flushed < ticket && !closed && (left = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    lock.wait(left);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (flushed < ticket) {
+                throw new WriteTimeoutException(closed
+                        ? "Write was not saved before shutdown"
+                        : "Write is not on disk yet; it is kept in memory and retried", failure);
+            }
+        }
+    }
+
+    /**
+     * Stops the writer: nothing more is accepted or retried, and waiting
+     * callers are released. Call it after {@link #drain()}.
+     */
+    void close() {
+        synchronized (lock) {
+            closed = true;
+            if (thread != null) {
+                thread.interrupt();
+            }
+            lock.notifyAll();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            List<byte[]> batch;
+            long upTo;
+            synchronized (lock) {
+                try {
+                    while (pending.isEmpty()) {
+                        lock.wait();
+                    }
+                    if (durability != Durability.SYNC) {
+                        // Give concurrent requests a window to join this batch
+                        long deadline = System.currentTimeMillis() + intervalMillis;
+                        long left;
+                        while ((left = deadline - System.currentTimeMillis()) > 0) {
+                            lock.wait(left);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                batch = new ArrayList<>(pending);
+                pending.clear();
+                upTo = submitted;
+            }
+            try {
+                batchWriter.write(batch);
+                synchronized (lock) {
+                    flushed = upTo;
+                    failure = null;
+                    lock.notifyAll();
+                }
+            } catch (IOException | RuntimeException e) {
+                synchronized (lock) {
+                    failure = e instanceof IOException io ? io : new IOException(e);
+                    if (closed) {
+                        log.error("{}: failed to write {} entries at shutdown, giving up", name, batch.size(), e);
+                        return;
+                    }
+                    log.warn("{}: failed to write {} entries, retrying", name, batch.size(), e);
+                    pending.addAll(0, batch);
+                }
+                try {
+                    Thread.sleep(intervalMillis * 10);
+                } catch (InterruptedException interrupted) {
+                    log.error("{}: closed with {} entries not written", name, batch.size());
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.repository;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Append-only log of mutations that sits next to a repository's data file.
+ *
+ * One JSON object per line: {"op":"U","data":{...}} for an upsert and
+ * {"op":"D","id":"..."} for a delete. The current state is the data file with
+ * the journal replayed on top of it.
+ */
+final class Journal {
+
+    private static final Logger log = LoggerFactory.getLogger(Journal.class);
+
+    static final String UPSERT = "U";
+    static final String DELETE = "D";
+
+    private final ObjectMapper objectMapper;
+    private final Path path;
+
+    Journal(ObjectMapper objectMapper, Path path) {
+        this.objectMapper = objectMapper;
+        this.path = path;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    byte[] encodeUpsert(Object entity) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("op", UPSERT);
+            generator.writeFieldName("data");
+            objectMapper.writeValue(generator, entity);
+            generator.writeEndObject();
+        }
+        out.write('\n');
+        return out.toByteArray();
+    }
+
+    byte[] encodeDelete(UUID id) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("op", DELETE);
+            generator.writeStringField("id", id.toString());
+            generator.writeEndObject();
+        }
+        out.write('\n');
+        return out.toByteArray();
+    }
+
+    /**
+     * Appends the records with a single gathering write and fsyncs the file.
+     */
+    void append(List<byte[]> records) throws IOException {
+        ByteBuffer[] buffers = new ByteBuffer[records.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.wrap(records.get(i));
+        }
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long remaining = 0;
+            for (ByteBuffer buffer : buffers) {
+                remaining += buffer.remaining();
+            }
+            while (remaining > 0) {
+                remaining -= channel.write(buffers);
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Replays every record in order, one line each. A final line without its
+     * newline is a record torn by a crash mid-append: it is logged, skipped
+     * and cut off the file, so the next append starts on a line of its own.
+     * Any other record that cannot be read fails the replay, rather than
+     * silently dropping it and everything after it.
+     *
+     * @return the number of records applied
+     */
+    <T> long replay(Class<T> type, Consumer<T> onUpsert, Consumer<UUID> onDelete) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        long applied = 0;
+        long lineNumber = 0;
+        long complete = 0;
+        ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            for (int next = in.read(); next != -1; next = in.read()) {
+                if (next != '\n') {
+                    line.write(next);
+                    continue;
+                }
+                lineNumber++;
+                complete += line.size() + 1;
+                if (apply(line.toByteArray(), type, onUpsert, onDelete, lineNumber)) {
+                    applied++;
+                }
+                line.reset();
+            }
+        }
+        if (line.size() > 0) {
+            log.warn("Dropping torn record at the end of {} (line {})", path, lineNumber + 1);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(complete);
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * @return false for a blank line
+     */
+    private <T> boolean apply(byte[] record, Class<T> type, Consumer<T> onUpsert, Consumer<UUID> onDelete,
+                              long lineNumber) throws IOException {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(record);
+            if (node == null || node.isMissingNode()) {
+                return false;
+            }
+            String op = node.path("op").asText(null);
+            if (UPSERT.equals(op) && node.hasNonNull("data")) {
+                onUpsert.accept(objectMapper.treeToValue(node.get("data"), type));
+                return true;
+            }
+            if (DELETE.equals(op) && node.hasNonNull("id")) {
+                onDelete.accept(UUID.fromString(node.get("id").asText()));
+                return true;
+            }
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            throw new IOException("Unreadable record at line " + lineNumber + " of " + path, e);
+        }
+        throw new IOException("Unknown record at line " + lineNumber + " of " + path);
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+}
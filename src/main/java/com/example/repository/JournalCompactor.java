@@ -0,0 +1,52 @@
+package com.example.repository;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically folds each repository's journal back into its data file so
+ * the journal (and with it the replay time on startup) stays bounded.
+ *
+ * A repository is compacted once its journal reaches any of the byte, record
+ * count or age thresholds below. With the journal disabled there is never
+ * anything to do.
+ */
+@Component
+public class JournalCompactor {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalCompactor.class);
+
+    private final List<MainRepository<?>> repositories;
+
+    @Value("${spring.application.compaction.maxJournalBytes:8388608}")
+    private long maxJournalBytes;
+
+    @Value("${spring.application.compaction.maxJournalRecords:10000}")
+    private long maxJournalRecords;
+
+    @Value("${spring.application.compaction.maxJournalAgeMs:600000}")
+    private long maxJournalAgeMs;
+
+    @Autowired
+    public JournalCompactor(List<MainRepository<?>> repositories) {
+        this.repositories = repositories;
+    }
+
+    @Scheduled(fixedDelayString = "${spring.application.compaction.intervalMs:30000}")
+    public void compactRepositories() {
+        for (MainRepository<?> repository : repositories) {
+            try {
+                repository.compactIfNeeded(maxJournalBytes, maxJournalRecords, maxJournalAgeMs);
+            } catch (RuntimeException e) {
+                // Leave the journal in place; it is retried on the next run
+                log.warn("Compacting {} failed", repository.getClass().getSimpleName(), e);
+            }
+        }
+    }
+}
@@ -1,62 +1,1006 @@
 package com.example.repository;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Repository;
 
+import com.example.exceptions.DuplicateKeyException;
+import com.example.exceptions.InvalidLimitException;
+import com.example.model.Versioned;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Base repository backed by a JSON array file.
+ *
+ * The file is loaded once into a resident store keyed by id and every read is
+ * served from memory; writes go to the store first and are then written
+ * through to disk. If the file is changed behind our back (different mtime or
+ * size) the store is reloaded on the next access.
+ *
+ * With spring.application.journalEnabled=true single-entity writes are not
+ * written through as a full file rewrite: each one appends an upsert or
+ * delete record to a journal next to the data file (see {@link Journal}), and
+ * loading replays that journal on top of the data file. Bulk writes
+ * (saveAll) still rewrite the data file, which also empties the journal.
+ * {@link JournalCompactor} folds the journal back into the data file in the
+ * background once it grows past the configured thresholds.
+ *
+ * All disk writes go through one {@link GroupCommitWriter} per repository,
+ * which batches concurrent mutations into a single write + fsync. Whether a
+ * write waits for that is set per entity with {@link #getDurability()}.
+ *
+ * Read-modify-write on one entity is serialized by a lock striped on its id
+ * ({@link #update(UUID, Consumer)}, {@link #withLock(UUID, Supplier)}), so
+ * changes to different carts or users run in parallel while two changes to
+ * the same one cannot lose each other's update.
+ *
+ * Subclasses can register secondary indexes on entity properties
+ * ({@link #registerIndex(String, Function, boolean)}); they are kept with
+ * the store and queried with {@link #findBy(String, Object)}.
+ *
+ * Until the store is loaded (or while it is stale) the first few
+ * {@link #findById(UUID)} and {@link #page(List, Function, int, String)} calls stream
+ * the file with a {@link StreamingReader}, building only the matching
+ * records, instead of loading everything.
+ *
+ * Inside {@link TransactionManager#inTransaction(Supplier)} writes are still
+ * applied to the store at once but only written out when the transaction
+ * commits (see {@link UnitOfWork}).
+ *
+ * Every write bumps the entity's version. {@link #compareAndSet(Versioned)}
+ * only writes if the stored version is still the one the caller read, which
+ * lets low-contention paths skip the lock and retry on conflict instead.
+ *
+ * The store keeps its own copy of everything it is given, so callers can keep
+ * using (or have passed immutable collections inside) the objects they saved.
+ * Entities returned from reads are the resident ones and may be serialized by
+ * the writer at any time: never mutate them, change a copy through
+ * {@link #update(UUID, Consumer)} instead.
+ */
 @Primary
 @Repository
-public abstract class MainRepository<T> {
+public abstract class MainRepository<T extends Versioned> {
+
+    protected ObjectMapper objectMapper = new ObjectMapper().registerModule(new UuidModule());
+    private final StreamingReader reader = new StreamingReader(objectMapper);
+
+    @Value("${spring.application.journalEnabled:false}")
+    private boolean journalEnabled;
+
+    @Value("${spring.application.groupCommitIntervalMs:5}")
+    private long groupCommitIntervalMs;
+
+    @Value("${spring.application.writeTimeoutMs:10000}")
+    private long writeTimeoutMs;
+
+    @Value("${spring.application.fileCheckIntervalMs:1000}")
+    private long fileCheckIntervalMs;
+
+    @Value("${spring.application.changeLogSize:1000}")
+    private int changeLogSize;
+
+    private static final int LOCK_STRIPES = 64;
+    private static final long ANY_VERSION = -1;
+    private static final long NO_TICKET = -1;
+    private static final String ID_FIELD = "id";
+    // Point reads served from the file before a stale store is loaded after all
+    private static final int COLD_LOOKUPS_BEFORE_LOAD = 8;
+
+    private final Object writeLock = new Object();
+    private final StripedLocks entityLocks = new StripedLocks(LOCK_STRIPES);
+    private final List<SecondaryIndex<T>> indexes = new CopyOnWriteArrayList<>();
+    private final AtomicInteger coldLookups = new AtomicInteger();
+    // Seeded from the clock so revisions keep going up across restarts
+    private final AtomicLong revision = new AtomicLong(System.currentTimeMillis() << 20);
+    private ChangeLog<T> changeLog;
+    private volatile Store<T> store = new Store<>(indexes);
+    private volatile Stamp loadedStamp;
+    // System.nanoTime() of the last time the files were found unchanged
+    private volatile long filesCheckedAt;
+    private volatile GroupCommitWriter writer;
+    private Journal journal;
+    private volatile long journalRecords;
+    private volatile long journalStartedAt;
 
-    protected ObjectMapper objectMapper = new ObjectMapper();
-    
     protected abstract String getDataPath();
     protected abstract Class<T[]> getArrayType();
+    protected abstract UUID idOf(T entity);
+
+    protected String getJournalPath() {
+        return getDataPath() + ".journal";
+    }
+
+    protected Durability getDurability() {
+        return Durability.SYNC;
+    }
+
+    /**
+     * Called on every entity about to become resident, loaded or stored, so a
+     * repository can replace parts of it with shared equal instances. The
+     * entity is always one the store owns, never the caller's.
+     */
+    protected void canonicalize(T entity) {
+    }
+
+    /**
+     * Called when a transaction rolls back its write to an entity that another
+     * thread has written since. previous and written are the entity before and
+     * after the rolled-back write (null where there was none); current is a
+     * copy of what is stored now, which the repository may change and return.
+     * Returns the entity to store instead, or null to keep the other thread's
+     * write as it is, which is the default.
+     */
+    protected T mergeRollback(T previous, T written, T current) {
+        return null;
+    }
+
+    /**
+     * Registers a secondary index, queried with {@link #findBy(String, Object)}
+     * and kept up to date by every save, saveAll, delete and reload. Call it
+     * from the subclass constructor.
+     *
+     * A unique index rejects a write that would give a second entity the same
+     * key with a {@link DuplicateKeyException}; duplicates already present in
+     * the files are still loaded.
+     */
+    protected void registerIndex(String name, Function<T, ?> keyExtractor, boolean unique) {
+        for (SecondaryIndex<T> index : indexes) {
+            if (index.getName().equals(name)) {
+                throw new IllegalArgumentException("Index already registered: " + name);
+            }
+        }
+        indexes.add(new SecondaryIndex<>(name, keyExtractor, unique));
+    }
 
     public MainRepository(){
 
     }
+
     public ArrayList<T> findAll() {
+        ensureLoaded();
+        return new ArrayList<>(store.rows.values());
+    }
+
+    /**
+     * A number that goes up whenever the stored data changes, including
+     * reloads after the file was changed outside this repository, and keeps
+     * going up across restarts. Callers that derive something from the data
+     * (a serialized response, an ETag) can keep it for as long as the
+     * revision stays the same. Read it before the data.
+     *
+     * Returns -1 while the store is not loaded or is stale, rather than
+     * loading it, so checking the revision never stops a read from taking the
+     * cold path; callers then go without.
+     */
+    public long getRevision() {
+        if (!isCurrent()) {
+            return -1;
+        }
+        return revision.get();
+    }
+
+    /**
+     * The revision at which the entity was last written (or loaded), or -1
+     * if there is no entity with that id or, as with {@link #getRevision()},
+     * the store is not loaded or is stale.
+     */
+    public long getRevision(UUID id) {
+        if (id == null || !isCurrent()) {
+            return -1;
+        }
+        return store.revisionOf(id);
+    }
+
+    /**
+     * Returns what changed after the given revision, from a bounded log of
+     * recent writes; see {@link Changes}. Falls back to every entity when the
+     * log does not reach back far enough or the data was reloaded since.
+     */
+    public Changes<T> changesSince(long since) {
+        ensureLoaded();
+        synchronized (writeLock) {
+            long current = revision.get();
+            Map<UUID, T> changes = changeLog().since(since);
+            if (changes == null) {
+                return new Changes<>(current, true, new ArrayList<>(store.rows.values()), List.of());
+            }
+            ArrayList<T> upserts = new ArrayList<>();
+            ArrayList<UUID> deleted = new ArrayList<>();
+            for (Map.Entry<UUID, T> change : changes.entrySet()) {
+                if (change.getValue() != null) {
+                    upserts.add(change.getValue());
+                } else {
+                    deleted.add(change.getKey());
+                }
+            }
+            return new Changes<>(current, false, upserts, deleted);
+        }
+    }
+
+    /**
+     * Iterates over the entities in file order without copying them into a
+     * list, for callers that stream them out. The iterator is weakly
+     * consistent: it never fails on concurrent writes and may or may not see
+     * them.
+     */
+    public Iterator<T> iterateAll() {
+        ensureLoaded();
+        return Collections.unmodifiableCollection(store.rows.values()).iterator();
+    }
+
+    public T findById(UUID id) {
+        if (id == null) {
+            return null;
+        }
+        if (!isCurrent() && canReadDataFileDirectly() && coldLookups.getAndIncrement() < COLD_LOOKUPS_BEFORE_LOAD) {
+            return findInDataFile(id);
+        }
+        ensureLoaded();
+        return store.byId.get(id);
+    }
+
+    /**
+     * Looks up several ids at once and returns the entities in the order
+     * asked, with null for each id that was not found. Served from the store,
+     * or, while it is cold, from a single streaming pass over the data file.
+     */
+    public ArrayList<T> findAllById(List<UUID> ids) {
+        Map<UUID, T> found;
+        if (!isCurrent() && canReadDataFileDirectly() && coldLookups.getAndIncrement() < COLD_LOOKUPS_BEFORE_LOAD) {
+            found = findAllInDataFile(ids);
+        } else {
+            ensureLoaded();
+            found = store.byId;
+        }
+        ArrayList<T> result = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            result.add(id != null ? found.get(id) : null);
+        }
+        return result;
+    }
+
+    public boolean existsById(UUID id) {
+        return findById(id) != null;
+    }
+
+    /**
+     * Returns the projection of up to limit entities that pass every filter,
+     * in file order. See {@link #page(List, Function, int, String)}.
+     */
+    public <R> ArrayList<R> scan(List<FieldFilter<T>> filters, Function<T, R> projection, int limit) {
+        return new ArrayList<>(page(filters, projection, limit, null).items());
+    }
+
+    /**
+     * Returns one page of the projection of the entities that pass every
+     * filter, in file order: up to limit of them, starting after the cursor
+     * (null for the first page), and the cursor of the next page, or null if
+     * this is the last one.
+     *
+     * Pages are keyed on the row's place in the ordered store, so any page
+     * costs a seek plus its own rows. A cursor survives its last entity being
+     * deleted and the store being reloaded.
+     *
+     * While the store is not loaded (or stale) a first page is streamed from
+     * the data file and the filters are checked on the raw field values, so
+     * records that fail are never built.
+     */
+    public <R> Page<R> page(List<FieldFilter<T>> filters, Function<T, R> projection, int limit, String after) {
+        if (limit < 0) {
+            throw new InvalidLimitException("Limit cannot be negative");
+        }
+        if (limit == 0) {
+            return new Page<>(List.of(), null);
+        }
+        // One row more than asked tells whether there is a next page
+        int wanted = limit == Integer.MAX_VALUE ? limit : limit + 1;
+        ArrayList<T> rows = new ArrayList<>();
+        ArrayList<Long> positions = new ArrayList<>();
+        if (after == null && !isCurrent() && canReadDataFileDirectly()
+                && coldLookups.getAndIncrement() < COLD_LOOKUPS_BEFORE_LOAD) {
+            // With no journal, a load numbers the rows in file order just like this
+            scanDataFile(filters, (index, entity) -> {
+                rows.add(entity);
+                positions.add(index);
+                return rows.size() < wanted;
+            });
+        } else {
+            ensureLoaded();
+            Store<T> current = store;
+            Map<Long, T> tail = after != null
+                    ? current.rows.tailMap(current.positionAfter(Cursor.decode(after)), false)
+                    : current.rows;
+            for (Map.Entry<Long, T> row : tail.entrySet()) {
+                if (FieldFilter.matchesAll(filters, row.getValue())) {
+                    rows.add(row.getValue());
+                    positions.add(row.getKey());
+                    if (rows.size() >= wanted) {
+                        break;
+                    }
+                }
+            }
+        }
+        String next = null;
+        if (rows.size() > limit) {
+            rows.remove(limit);
+            next = new Cursor(positions.get(limit - 1), idOf(rows.get(limit - 1))).encode();
+        }
+        ArrayList<R> items = new ArrayList<>(rows.size());
+        for (T row : rows) {
+            items.add(projection.apply(row));
+        }
+        return new Page<>(items, next);
+    }
+
+    /**
+     * Returns the entities whose indexed key equals the given key, in file
+     * order.
+     */
+    public ArrayList<T> findBy(String indexName, Object key) {
+        ensureLoaded();
+        Store<T> current = store;
+        ConcurrentHashMap<Object, Set<UUID>> entries = current.entries(indexName);
+        Set<UUID> ids = key != null ? entries.get(key) : null;
+        ArrayList<T> found = new ArrayList<>();
+        if (ids == null) {
+            return found;
+        }
+        ArrayList<Long> positions = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            Long position = current.positions.get(id);
+            if (position != null) {
+                positions.add(position);
+            }
+        }
+        Collections.sort(positions);
+        for (Long position : positions) {
+            T entity = current.rows.get(position);
+            if (entity != null) {
+                found.add(entity);
+            }
+        }
+        return found;
+    }
+
+    public void saveAll(ArrayList<T> data) {
+        long ticket;
+        synchronized (writeLock) {
+            Store<T> replacement = new Store<>(indexes);
+            for (T entity : data) {
+                T detached = detach(entity);
+                T current = store.byId.get(idOf(detached));
+                detached.setVersion(nextVersion(current, detached));
+                canonicalize(detached);
+                replacement.put(idOf(detached), detached);
+            }
+            replacement.baseRevision = revision.incrementAndGet();
+            store = replacement;
+            changeLog().reset(replacement.baseRevision);
+            ticket = writer().submit(null);
+        }
+        writer().awaitDurable(ticket);
+    }
+
+    /**
+     * Inserts the entity, or replaces the stored one with the same id in place.
+     */
+    public void save(T data){
+        T detached = detach(data);
+        withLock(idOf(detached), () -> put(detached, ANY_VERSION));
+    }
+
+    /**
+     * Returns a private copy of the stored entity, for callers that want to
+     * change it and write it back with {@link #compareAndSet(Versioned)}.
+     */
+    public T findDetachedById(UUID id) {
+        T current = findById(id);
+        return current != null ? detach(current) : null;
+    }
+
+    /**
+     * Saves the entity only if the stored version still equals the entity's
+     * version, i.e. nobody wrote it since it was read. An entity that is not
+     * stored yet must carry version 0. Does not block on the entity lock.
+     *
+     * @return false if the entity changed in the meantime
+     */
+    public boolean compareAndSet(T entity) {
+        T detached = detach(entity);
+        return put(detached, entity.getVersion());
+    }
+
+    /**
+     * Applies the change to a copy of the stored entity and saves the copy,
+     * holding the entity's lock throughout.
+     *
+     * @return the updated entity, or null if there is no entity with that id
+     */
+    public T update(UUID id, Consumer<T> change) {
+        if (id == null) {
+            return null;
+        }
+        return withLock(id, () -> {
+            while (true) {
+                T current = findById(id);
+                if (current == null) {
+                    return null;
+                }
+                T updated = detach(current);
+                change.accept(updated);
+                // Lock holders only race with compareAndSet callers; retry if one got in first
+                if (put(updated, current.getVersion())) {
+                    return updated;
+                }
+            }
+        });
+    }
+
+    public boolean deleteById(UUID id) {
+        if (id == null) {
+            return false;
+        }
+        return withLock(id, () -> {
+            long ticket;
+            synchronized (writeLock) {
+                ensureLoaded();
+                T previous = store.byId.get(id);
+                if (!store.remove(id)) {
+                    return false;
+                }
+                stored(id, null);
+                ticket = submit(id, previous, journalEnabled ? encode(() -> journal().encodeDelete(id)) : null);
+            }
+            awaitDurable(ticket);
+            return true;
+        });
+    }
+
+    /**
+     * Runs the action holding the lock for the given id, for read-modify-write
+     * sequences that need more than a single {@link #update(UUID, Consumer)}.
+     */
+    public <R> R withLock(UUID id, Supplier<R> action) {
+        if (id == null) {
+            throw new IllegalArgumentException("Entity must have an id");
+        }
+        ReentrantLock lock = entityLocks.get(id);
+        lock.lock();
         try {
-            File file = new File(getDataPath());
-            if (!file.exists()) {
-                return new ArrayList<>();
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void overrideData(ArrayList<T> data) {
+        saveAll(data);
+    }
+
+    /**
+     * Writes a fresh snapshot of the store and truncates the journal if the
+     * journal has reached any of the given limits.
+     *
+     * @return whether a compaction was done
+     */
+    public boolean compactIfNeeded(long maxJournalBytes, long maxJournalRecords, long maxJournalAgeMillis) {
+        synchronized (writeLock) {
+            ensureLoaded();
+            if (journalRecords == 0) {
+                return false;
+            }
+            long journalBytes = loadedStamp != null ? loadedStamp.journal().size() : 0;
+            boolean due = journalBytes >= maxJournalBytes
+                    || journalRecords >= maxJournalRecords
+                    || System.currentTimeMillis() - journalStartedAt >= maxJournalAgeMillis;
+            if (!due) {
+                return false;
+            }
+        }
+        compact();
+        return true;
+    }
+
+    /**
+     * Folds the journal into the data file. Runs on the writer like any other
+     * write, so neither readers nor writers are blocked while it happens.
+     */
+    public void compact() {
+        long ticket;
+        synchronized (writeLock) {
+            ensureLoaded();
+            ticket = writer().submit(null);
+        }
+        writer().await(ticket);
+    }
+
+    /**
+     * Waits until every write accepted so far, including ASYNC ones, is on disk.
+     */
+    public void flush() {
+        GroupCommitWriter current = writer;
+        if (current != null) {
+            current.drain();
+        }
+    }
+
+    /**
+     * Flushes, then stops the writer so a failing disk is not retried past
+     * shutdown.
+     */
+    @PreDestroy
+    public void close() {
+        GroupCommitWriter current = writer;
+        if (current != null) {
+            try {
+                current.drain();
+            } finally {
+                current.close();
+            }
+        }
+    }
+
+    private boolean put(T owned, long expectedVersion) {
+        long ticket;
+        synchronized (writeLock) {
+            ensureLoaded();
+            T current = store.byId.get(idOf(owned));
+            long currentVersion = current != null ? current.getVersion() : 0;
+            if (expectedVersion != ANY_VERSION && expectedVersion != currentVersion) {
+                return false;
             }
-            T[] array = objectMapper.readValue(file, getArrayType()); // Deserialize to array first
-            return new ArrayList<>(Arrays.asList(array));
-            // return objectMapper.readValue(file, new TypeReference<ArrayList<T>>(){});
+            store.checkUnique(idOf(owned), current, owned);
+            owned.setVersion(nextVersion(current, owned));
+            canonicalize(owned);
+            store.put(idOf(owned), owned);
+            stored(idOf(owned), owned);
+            ticket = submit(idOf(owned), current, journalEnabled ? encode(() -> journal().encodeUpsert(owned)) : null);
+        }
+        awaitDurable(ticket);
+        return true;
+    }
+
+    /**
+     * Hands the entry to the writer, or to the thread's unit of work together
+     * with a step that puts previous back. Called under the write lock, after
+     * the write has been applied to the store.
+     *
+     * Other threads see the write before it commits, so by the time it is
+     * undone one may have written the entity again; previous is only put back
+     * if the entity is still as this write left it, otherwise
+     * {@link #mergeRollback} decides.
+     *
+     * @return the writer ticket, or NO_TICKET if the write was deferred
+     */
+    private long submit(UUID id, T previous, byte[] entry) {
+        UnitOfWork unitOfWork = UnitOfWork.current();
+        if (unitOfWork == null) {
+            return writer().submit(entry);
+        }
+        T written = store.byId.get(id);
+        unitOfWork.record(this, entry, () -> {
+            T current = store.byId.get(id);
+            if (sameVersion(current, written)) {
+                if (previous != null) {
+                    store.put(id, previous);
+                } else {
+                    store.remove(id);
+                }
+                stored(id, previous);
+            } else if (current != null) {
+                T merged = mergeRollback(previous, written, detach(current));
+                if (merged != null) {
+                    merged.setVersion(nextVersion(current, merged));
+                    canonicalize(merged);
+                    store.put(id, merged);
+                    stored(id, merged);
+                }
+            }
+        });
+        return NO_TICKET;
+    }
+
+    private static boolean sameVersion(Versioned current, Versioned written) {
+        if (current == null || written == null) {
+            return current == written;
+        }
+        return current.getVersion() == written.getVersion();
+    }
+
+    /**
+     * Gives a single-entity write its revision and logs it; entity is null
+     * for a delete. Called under the write lock.
+     */
+    private void stored(UUID id, T entity) {
+        long current = revision.incrementAndGet();
+        if (entity != null) {
+            store.touch(id, current);
+        }
+        changeLog().append(current, id, entity);
+    }
+
+    private ChangeLog<T> changeLog() {
+        if (changeLog == null) {
+            changeLog = new ChangeLog<>(changeLogSize > 0 ? changeLogSize : 1000);
+        }
+        return changeLog;
+    }
+
+    private void awaitDurable(long ticket) {
+        if (ticket != NO_TICKET) {
+            writer().awaitDurable(ticket);
+        }
+    }
+
+    /**
+     * Submits the entries a unit of work collected for this repository as one
+     * batch.
+     */
+    long submitBatch(List<byte[]> entries) {
+        synchronized (writeLock) {
+            return writer().submitAll(entries);
+        }
+    }
+
+    void awaitBatch(long ticket) {
+        writer().awaitDurable(ticket);
+    }
+
+    /**
+     * Undoes a unit of work's changes to the store and rewrites the data file,
+     * in case a snapshot taken meanwhile picked the changes up.
+     */
+    void rollBack(List<Runnable> undo) {
+        long ticket;
+        synchronized (writeLock) {
+            for (int i = undo.size() - 1; i >= 0; i--) {
+                undo.get(i).run();
+            }
+            ticket = writer().submit(null);
+        }
+        writer().awaitDurable(ticket);
+    }
+
+    /**
+     * The data file alone is the current state only if there is no journal to
+     * replay on top of it.
+     */
+    private boolean canReadDataFileDirectly() {
+        return Files.exists(Path.of(getDataPath())) && !Files.exists(Path.of(getJournalPath()));
+    }
+
+    /**
+     * Point lookup straight from the data file while the store is not loaded
+     * (or stale), stopping at the match.
+     */
+    private T findInDataFile(UUID id) {
+        ArrayList<T> found = new ArrayList<>(1);
+        scanDataFile(List.of(FieldFilter.equalTo(ID_FIELD, this::idOf, id)), (index, entity) -> {
+            found.add(entity);
+            return false;
+        });
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    private Map<UUID, T> findAllInDataFile(List<UUID> ids) {
+        Set<UUID> wanted = new HashSet<>(ids);
+        wanted.remove(null);
+        HashMap<UUID, T> found = new HashMap<>();
+        if (!wanted.isEmpty()) {
+            scanDataFile(List.of(FieldFilter.in(ID_FIELD, this::idOf, wanted)), (index, entity) -> {
+                found.put(idOf(entity), entity);
+                return found.size() < wanted.size();
+            });
+        }
+        return found;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void scanDataFile(List<FieldFilter<T>> filters, StreamingReader.MatchHandler<T> handler) {
+        try {
+            reader.scan(Path.of(getDataPath()), (Class<T>) getArrayType().getComponentType(), filters, handler);
         } catch (IOException e) {
             throw new RuntimeException("Failed to read from JSON file", e);
         }
     }
 
-    public void saveAll(ArrayList<T> data) {
+    private long nextVersion(T current, T replacement) {
+        long currentVersion = current != null ? current.getVersion() : 0;
+        return Math.max(currentVersion, replacement.getVersion()) + 1;
+    }
+
+    private void ensureLoaded() {
+        if (isCurrent()) {
+            return;
+        }
+        synchronized (writeLock) {
+            if (!isCurrent()) {
+                load(currentStamp());
+            }
+        }
+    }
+
+    /**
+     * While our own writes are in flight the store is ahead of the files, so
+     * the files are only compared against what we last wrote once the writer
+     * has caught up. Comparing them takes two stat calls, so a loaded store
+     * does it at most once per fileCheckIntervalMs (every time if that is 0):
+     * changes made to the files outside this repository show up within that
+     * interval.
+     */
+    private boolean isCurrent() {
+        Stamp loaded = loadedStamp;
+        if (loaded == null) {
+            return false;
+        }
+        GroupCommitWriter current = writer;
+        if (current != null && !current.isIdle()) {
+            return true;
+        }
+        long now = System.nanoTime();
+        if (fileCheckIntervalMs > 0 && now - filesCheckedAt < fileCheckIntervalMs * 1_000_000) {
+            return true;
+        }
+        if (!currentStamp().equals(loaded)) {
+            return false;
+        }
+        filesCheckedAt = now;
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void load(Stamp stamp) {
+        Store<T> loaded = new Store<>(indexes);
         try {
-            objectMapper.writeValue(new File(getDataPath()), data);
+            if (stamp.data().exists()) {
+                T[] array = objectMapper.readValue(new File(getDataPath()), getArrayType());
+                for (T entity : array) {
+                    canonicalize(entity);
+                    loaded.put(idOf(entity), entity);
+                }
+            }
+            journalRecords = journal().replay((Class<T>) getArrayType().getComponentType(), entity -> {
+                canonicalize(entity);
+                loaded.put(idOf(entity), entity);
+            }, loaded::remove);
+            journalStartedAt = System.currentTimeMillis();
         } catch (IOException e) {
-            throw new RuntimeException("Failed to write to JSON file", e);
+            throw new RuntimeException("Failed to read from JSON file", e);
         }
+        loaded.baseRevision = revision.incrementAndGet();
+        store = loaded;
+        changeLog().reset(loaded.baseRevision);
+        loadedStamp = stamp;
+        filesCheckedAt = System.nanoTime();
+        coldLookups.set(0);
     }
 
-    public void save(T data){
-        ArrayList<T> allData = findAll();
-        allData.add(data);
-        saveAll(allData);
+    private GroupCommitWriter writer() {
+        GroupCommitWriter current = writer;
+        if (current == null) {
+            synchronized (writeLock) {
+                if (writer == null) {
+                    Durability durability = getDurability() != null ? getDurability() : Durability.SYNC;
+                    writer = new GroupCommitWriter(getClass().getSimpleName() + "-writer", durability,
+                            groupCommitIntervalMs, writeTimeoutMs > 0 ? writeTimeoutMs : 10_000, this::writeBatch);
+                }
+                current = writer;
+            }
+        }
+        return current;
     }
 
+    /**
+     * Called on the writer thread. A batch holding a snapshot request (null)
+     * rewrites the data file and empties the journal; the snapshot already
+     * covers every journal record in the batch. Otherwise the records are
+     * appended to the journal in one write.
+     */
+    private void writeBatch(List<byte[]> batch) throws IOException {
+        if (batch.contains(null)) {
+            writeFile();
+            journal().delete();
+            journalRecords = 0;
+        } else {
+            journal().append(batch);
+            if (journalRecords == 0) {
+                journalStartedAt = System.currentTimeMillis();
+            }
+            journalRecords += batch.size();
+        }
+        loadedStamp = currentStamp();
+    }
 
+    private Journal journal() {
+        Path path = Path.of(getJournalPath());
+        Journal current = journal;
+        if (current == null || !current.getPath().equals(path)) {
+            current = new Journal(objectMapper, path);
+            journal = current;
+        }
+        return current;
+    }
 
-    public void overrideData(ArrayList<T> data) {
-        saveAll(data);
+    private byte[] encode(JournalEncoder encoder) {
+        try {
+            return encoder.encode();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write to journal file", e);
+        }
     }
 
-    
+    private Stamp currentStamp() {
+        return new Stamp(FileStamp.of(getDataPath()), FileStamp.of(getJournalPath()));
+    }
 
+    @SuppressWarnings("unchecked")
+    private T detach(T entity) {
+        return (T) objectMapper.convertValue(entity, getArrayType().getComponentType());
+    }
+
+    /**
+     * Writes the whole store to a temp file, fsyncs it and renames it over the
+     * data file, so a crash mid-write never leaves a truncated data file behind.
+     */
+    private void writeFile() throws IOException {
+        List<T> data = new ArrayList<>(store.rows.values());
+        Path target = Path.of(getDataPath());
+        Path temp = Path.of(getDataPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+            objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(out, data);
+            out.getFD().sync();
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private interface JournalEncoder {
+        byte[] encode() throws IOException;
+    }
+
+    /**
+     * The resident data: a hash index for point lookups, the rows in file
+     * order and the entries of every secondary index. Bulk loads build a new
+     * Store and swap it in, so readers never see a half-filled one.
+     */
+    private static final class Store<T> {
+
+        private final ConcurrentHashMap<UUID, T> byId = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<UUID, Long> positions = new ConcurrentHashMap<>();
+        private final ConcurrentSkipListMap<Long, T> rows = new ConcurrentSkipListMap<>();
+        private final AtomicLong nextPosition = new AtomicLong();
+        // Revision of entities written since the store was built; the rest share baseRevision
+        private final ConcurrentHashMap<UUID, Long> revisions = new ConcurrentHashMap<>();
+        private volatile long baseRevision;
+        private final List<SecondaryIndex<T>> indexes;
+        private final ConcurrentHashMap<String, ConcurrentHashMap<Object, Set<UUID>>> indexEntries = new ConcurrentHashMap<>();
+
+        Store(List<SecondaryIndex<T>> indexes) {
+            this.indexes = indexes;
+        }
+
+        void touch(UUID id, long revision) {
+            revisions.put(id, revision);
+        }
 
+        long revisionOf(UUID id) {
+            if (!byId.containsKey(id)) {
+                return -1;
+            }
+            return revisions.getOrDefault(id, baseRevision);
+        }
+
+        /**
+         * Where a page after the cursor starts: its entity's current row if
+         * it is still stored, otherwise the row it had.
+         */
+        long positionAfter(Cursor cursor) {
+            Long position = positions.get(cursor.id());
+            return position != null ? position : cursor.position();
+        }
+
+        ConcurrentHashMap<Object, Set<UUID>> entries(String indexName) {
+            for (SecondaryIndex<T> index : indexes) {
+                if (index.getName().equals(indexName)) {
+                    return indexEntries.computeIfAbsent(indexName, k -> new ConcurrentHashMap<>());
+                }
+            }
+            throw new IllegalArgumentException("No index named " + indexName);
+        }
+
+        /**
+         * Fails if storing the entity would add a second owner to a key of a
+         * unique index. Entities that keep their key are let through, so
+         * duplicates that came in with the files do not block updates.
+         */
+        void checkUnique(UUID id, T previous, T entity) {
+            for (SecondaryIndex<T> index : indexes) {
+                Object key = index.keyOf(entity);
+                if (!index.isUnique() || key == null || key.equals(index.keyOf(previous))) {
+                    continue;
+                }
+                Set<UUID> owners = entries(index.getName()).get(key);
+                if (owners != null && !(owners.size() == 1 && owners.contains(id))) {
+                    throw new DuplicateKeyException("Duplicate " + index.getName() + ": " + key);
+                }
+            }
+        }
+
+        void put(UUID id, T entity) {
+            if (id == null) {
+                throw new IllegalArgumentException("Entity must have an id");
+            }
+            Long position = positions.computeIfAbsent(id, k -> nextPosition.getAndIncrement());
+            T previous = byId.put(id, entity);
+            rows.put(position, entity);
+            for (SecondaryIndex<T> index : indexes) {
+                index.update(entries(index.getName()), id, previous, entity);
+            }
+        }
+
+        boolean remove(UUID id) {
+            if (id == null) {
+                return false;
+            }
+            Long position = positions.remove(id);
+            if (position == null) {
+                return false;
+            }
+            rows.remove(position);
+            revisions.remove(id);
+            T previous = byId.remove(id);
+            for (SecondaryIndex<T> index : indexes) {
+                index.update(entries(index.getName()), id, previous, null);
+            }
+            return true;
+        }
+    }
+
+    private record Stamp(FileStamp data, FileStamp journal) {}
+
+    private record FileStamp(boolean exists, FileTime modified, long size) {
+
+        static FileStamp of(String path) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(Path.of(path), BasicFileAttributes.class);
+                return new FileStamp(true, attributes.lastModifiedTime(), attributes.size());
+            } catch (IOException e) {
+                return new FileStamp(false, null, 0);
+            }
+        }
+    }
 }
@@ -2,6 +2,7 @@ package com.example.repository;
 
 import com.example.exceptions.order.OrderNotFoundException;
 import com.example.model.Order;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
@@ -15,7 +16,22 @@ public class OrderRepository extends MainRepository<Order>{
   @Value("${spring.application.orderDataPath}")
   private String defaultOrderDataPath;
 
-  public OrderRepository() {}
+  @Value("${spring.application.orderDurability:SYNC}")
+  private Durability durability;
+
+  public static final String BY_USER_ID = "userId";
+
+  private final ProductInterner productInterner;
+
+  public OrderRepository() {
+    this(new ProductInterner());
+  }
+
+  @Autowired
+  OrderRepository(ProductInterner productInterner) {
+    this.productInterner = productInterner;
+    registerIndex(BY_USER_ID, Order::getUserId, false);
+  }
 
   @Override
   protected String getDataPath() {
@@ -32,6 +48,23 @@ public class OrderRepository extends MainRepository<Order>{
     return Order[].class;
   }
 
+  @Override
+  protected UUID idOf(Order order) {
+    return order.getId();
+  }
+
+  @Override
+  protected Durability getDurability() {
+    return durability;
+  }
+
+  @Override
+  protected void canonicalize(Order order) {
+    if (order.getProducts() != null) {
+      order.getProducts().replaceAll(productInterner::intern);
+    }
+  }
+
   public void addOrder(Order order){
     this.save(order);
   }
@@ -40,22 +73,22 @@ public class OrderRepository extends MainRepository<Order>{
     return this.findAll();
   }
 
+  public ArrayList<Order> getOrdersByUserId(UUID userId){
+    return this.findBy(BY_USER_ID, userId);
+  }
+
   public Order getOrderById(UUID orderId) throws OrderNotFoundException {
-    return this.findAll().stream()
-      .filter(o -> o.getId().compareTo(orderId) == 0)
-      .findFirst()
-      .orElseThrow(()->new OrderNotFoundException("Order not found"));
+    Order order = this.findById(orderId);
+    if(order == null)
+      throw new OrderNotFoundException("Order not found");
+    return order;
   }
 
   public void deleteOrderById(UUID orderId) throws OrderNotFoundException {
-    ArrayList<Order> orders = this.findAll();
-
-    boolean isDeleted = orders.removeIf(o -> o.getId().equals(orderId));  // Remove order by ID
+    boolean isDeleted = this.deleteById(orderId);
 
     if(!isDeleted)
       throw new OrderNotFoundException("Order not found");
-
-    this.saveAll(orders);
   }
 
 }
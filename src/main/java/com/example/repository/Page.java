@@ -0,0 +1,9 @@
+package com.example.repository;
+
+import java.util.List;
+
+/**
+ * One page of a {@link MainRepository#page} query: the items, and the opaque
+ * cursor to pass as "after" for the next page, or null after the last page.
+ */
+public record Page<R>(List<R> items, String next) {}
@@ -0,0 +1,54 @@
+package com.example.repository;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+
+import com.example.model.Product;
+
+/**
+ * Hands out one shared instance per distinct product snapshot (id, name,
+ * price and version), so the line items of resident carts and orders point
+ * at a few catalog-sized objects instead of one copy each.
+ *
+ * Shared snapshots must not be changed in place; repositories only ever
+ * change detached copies, which are interned again when stored. The table is
+ * bounded: once full it is cleared, which only costs sharing for snapshots
+ * seen afterwards. One instance is shared by the cart and order repositories,
+ * so a snapshot in a cart and in an order is the same object too.
+ */
+@Component
+final class ProductInterner {
+
+    private static final int DEFAULT_CAPACITY = 200_000;
+
+    private record Key(UUID id, String name, double price, long version) {}
+
+    private final int capacity;
+    private final ConcurrentHashMap<Key, Product> snapshots = new ConcurrentHashMap<>();
+
+    ProductInterner() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    ProductInterner(int capacity) {
+        this.capacity = capacity;
+    }
+
+    Product intern(Product product) {
+        if (product == null) {
+            return null;
+        }
+        Key key = new Key(product.getId(), product.getName(), product.getPrice(), product.getVersion());
+        Product shared = snapshots.get(key);
+        if (shared != null) {
+            return shared;
+        }
+        if (snapshots.size() >= capacity) {
+            snapshots.clear();
+        }
+        shared = snapshots.putIfAbsent(key, product);
+        return shared != null ? shared : product;
+    }
+}
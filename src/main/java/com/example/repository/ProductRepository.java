@@ -3,6 +3,7 @@ package com.example.repository;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.UUID;
 import com.example.model.Product;
@@ -13,7 +14,14 @@ public class ProductRepository extends MainRepository<Product> {
     @Value("${spring.application.productDataPath}")
     private String defaultProductDataPath;
 
-    public ProductRepository() {}
+    @Value("${spring.application.productDurability:SYNC}")
+    private Durability durability;
+
+    public static final String BY_NAME = "name";
+
+    public ProductRepository() {
+        registerIndex(BY_NAME, Product::getName, false);
+    }
 
     @Override
     protected String getDataPath() {
@@ -30,13 +38,25 @@ public class ProductRepository extends MainRepository<Product> {
         return Product[].class;
     }
 
+    @Override
+    protected UUID idOf(Product product) {
+        return product.getId();
+    }
+
+    @Override
+    protected Durability getDurability() {
+        return durability;
+    }
+
     public Product addProduct(Product product) {
-        List<Product> products = getProducts();
-        products.add(product);
-        saveAll(new ArrayList<>(products));
+        save(product);
         return product;
     }
 
+    public ArrayList<Product> getProductsByName(String name) {
+        return findBy(BY_NAME, name);
+    }
+
     public ArrayList<Product> getProducts() {
         try {
             ArrayList<Product> products = this.findAll();
@@ -47,56 +67,27 @@ public class ProductRepository extends MainRepository<Product> {
     }
 
     public Product getProductById(UUID productId) {
-        List<Product> products = this.findAll();
-        for (Product product : products) {
-            if (product.getId().equals(productId)) {
-                return product;
-            }
-        }
-        return null;
+        return this.findById(productId);
     }
 
     public Product updateProduct(UUID productId, String newName, double newPrice) {
-        List<Product> products = this.findAll();
-        Product updatedProduct = null;
-
-        for (Product product : products) {
-            if (product.getId().equals(productId)) {
-                product.setName(newName);
-                product.setPrice(newPrice);
-                updatedProduct = product;
-                break;
-            }
-        }
-
-        if (updatedProduct != null) {
-            this.saveAll(new ArrayList<>(products));
-        }
-
-        return updatedProduct;
+        return this.update(productId, product -> {
+            product.setName(newName);
+            product.setPrice(newPrice);
+        });
     }
 
     public void deleteProductById(UUID productId) {
-        List<Product> products = this.findAll();
-        List<Product> updatedProducts = new ArrayList<>();
-
-        for (Product product : products) {
-            if (!product.getId().equals(productId)) {
-                updatedProducts.add(product);
-            }
-        }
-        this.saveAll((ArrayList<Product>) updatedProducts);
+        this.deleteById(productId);
     }
 
     public void applyDiscountToProducts(double discount, List<UUID> productIds) {
-        List<Product> products = this.findAll();
-        for (Product product : products) {
-            if (productIds.contains(product.getId())) {
+        for (UUID productId : new HashSet<>(productIds)) {
+            this.update(productId, product -> {
                 double newPrice = product.getPrice() * (1 - discount/100.0);
                 newPrice = Math.round(newPrice * 100.0) / 100.0;
                 product.setPrice(newPrice);
-            }
+            });
         }
-        this.saveAll((ArrayList<Product>)products);
     }
 }
\ No newline at end of file
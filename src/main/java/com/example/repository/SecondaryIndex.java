@@ -0,0 +1,57 @@
+package com.example.repository;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Definition of a lookup on one property of an entity, registered by a
+ * repository with {@link MainRepository#registerIndex(String, Function, boolean)}.
+ *
+ * The entries themselves (key -> ids) live in the repository's store, so they
+ * are swapped together with it on a reload and can never disagree with it.
+ * Entities whose key is null are not indexed.
+ */
+final class SecondaryIndex<T> {
+
+    private final String name;
+    private final Function<T, ?> keyExtractor;
+    private final boolean unique;
+
+    SecondaryIndex(String name, Function<T, ?> keyExtractor, boolean unique) {
+        this.name = name;
+        this.keyExtractor = keyExtractor;
+        this.unique = unique;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    boolean isUnique() {
+        return unique;
+    }
+
+    Object keyOf(T entity) {
+        return entity != null ? keyExtractor.apply(entity) : null;
+    }
+
+    /**
+     * Moves the id from the previous entity's key to the current one's; either
+     * side may be null for an insert or a delete.
+     */
+    void update(ConcurrentHashMap<Object, Set<UUID>> entries, UUID id, T previous, T current) {
+        Object oldKey = keyOf(previous);
+        Object newKey = keyOf(current);
+        if (oldKey != null && !oldKey.equals(newKey)) {
+            entries.computeIfPresent(oldKey, (key, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+        if (newKey != null) {
+            entries.computeIfAbsent(newKey, key -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.repository;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * Reads records out of a JSON array file token by token, without building
+ * the whole array.
+ *
+ * Records that cannot match are skipped with {@link JsonParser#skipChildren()}
+ * as soon as a filtered field has failed, nested arrays included, so only
+ * matching records are ever turned into objects.
+ */
+final class StreamingReader {
+
+    interface MatchHandler<T> {
+        /**
+         * @param index the record's position in the array, counting from 0
+         * @return whether to keep reading
+         */
+        boolean onMatch(long index, T entity);
+    }
+
+    private final ObjectMapper objectMapper;
+
+    StreamingReader(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Hands every record that passes all filters to the handler, in file
+     * order, until the handler returns false or the file ends. Fields before
+     * the last filtered one are buffered as tokens; entities are written with
+     * their id first, so for id lookups nothing is buffered.
+     */
+    <T> void scan(Path path, Class<T> type, List<FieldFilter<T>> filters, MatchHandler<T> handler) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(path.toFile())) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                return;
+            }
+            for (long index = 0; parser.nextToken() == JsonToken.START_OBJECT; index++) {
+                TokenBuffer record = readRecord(parser, filters);
+                if (record == null) {
+                    continue;
+                }
+                T entity;
+                try (JsonParser recordParser = record.asParser()) {
+                    entity = objectMapper.readValue(recordParser, type);
+                }
+                if (!handler.onMatch(index, entity)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads one object, returning its tokens if it passed every filter and
+     * null (with the rest of the object skipped) otherwise.
+     */
+    private <T> TokenBuffer readRecord(JsonParser parser, List<FieldFilter<T>> filters) throws IOException {
+        TokenBuffer record = null;
+        int passed = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken valueToken = parser.nextToken();
+            List<FieldFilter<T>> fieldFilters = filtersOn(filters, name);
+            TokenBuffer value = null;
+            if (!fieldFilters.isEmpty()) {
+                if (!valueToken.isScalarValue()) {
+                    // A filter may consume a structured value, so it gets a copy
+                    value = new TokenBuffer(parser);
+                    value.copyCurrentStructure(parser);
+                }
+                for (FieldFilter<T> filter : fieldFilters) {
+                    if (!passes(filter, parser, value)) {
+                        skipRestOfObject(parser);
+                        return null;
+                    }
+                    passed++;
+                }
+            }
+            if (record == null) {
+                record = new TokenBuffer(parser);
+                record.writeStartObject();
+            }
+            record.writeFieldName(name);
+            if (value != null) {
+                value.serialize(record);
+            } else {
+                record.copyCurrentStructure(parser);
+            }
+        }
+        if (passed < filters.size()) {
+            return null;
+        }
+        if (record == null) {
+            record = new TokenBuffer(parser);
+            record.writeStartObject();
+        }
+        record.writeEndObject();
+        return record;
+    }
+
+    private <T> boolean passes(FieldFilter<T> filter, JsonParser parser, TokenBuffer value) throws IOException {
+        if (value == null) {
+            return filter.test(parser);
+        }
+        try (JsonParser valueParser = value.asParser()) {
+            valueParser.nextToken();
+            return filter.test(valueParser);
+        }
+    }
+
+    private <T> List<FieldFilter<T>> filtersOn(List<FieldFilter<T>> filters, String field) {
+        List<FieldFilter<T>> found = List.of();
+        for (FieldFilter<T> filter : filters) {
+            if (filter.getField().equals(field)) {
+                if (found.isEmpty()) {
+                    found = new ArrayList<>(1);
+                }
+                found.add(filter);
+            }
+        }
+        return found;
+    }
+
+    private void skipRestOfObject(JsonParser parser) throws IOException {
+        parser.skipChildren();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            parser.nextToken();
+            parser.skipChildren();
+        }
+    }
+}
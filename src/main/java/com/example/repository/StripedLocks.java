@@ -0,0 +1,31 @@
+package com.example.repository;
+
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks shared out by id hash.
+ *
+ * Two ids on the same stripe serialize each other, which is harmless; two
+ * operations on the same id always get the same lock.
+ */
+final class StripedLocks {
+
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    StripedLocks(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.locks = new ReentrantLock[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    ReentrantLock get(UUID id) {
+        int hash = id.hashCode();
+        hash ^= (hash >>> 16);
+        return locks[hash & mask];
+    }
+}
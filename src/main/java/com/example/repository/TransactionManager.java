@@ -0,0 +1,57 @@
+package com.example.repository;
+
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Groups writes to several repositories into one unit of work.
+ *
+ * Every save, update and delete made on the calling thread inside
+ * {@link #inTransaction(Supplier)} is buffered and written when the work
+ * returns: one batch (one journal append or one file rewrite) per touched
+ * repository, all submitted before any is waited on. If the work throws, the
+ * stores are put back as they were and nothing of it is written.
+ *
+ * This is about atomicity and fewer disk writes, not isolation: other threads
+ * see the changes in memory as soon as they are made. An entity another thread
+ * wrote since is not put back; the repository merges or keeps its write (see
+ * {@link MainRepository#mergeRollback}). saveAll is not part of a transaction
+ * and is written straight away.
+ */
+@Component
+public class TransactionManager {
+
+    /**
+     * Runs the work in a transaction, or as part of the current one if the
+     * thread is already in a transaction.
+     */
+    public <R> R inTransaction(Supplier<R> work) {
+        if (UnitOfWork.current() != null) {
+            return work.get();
+        }
+        UnitOfWork unitOfWork = UnitOfWork.begin();
+        R result;
+        try {
+            result = work.get();
+        } catch (RuntimeException | Error e) {
+            UnitOfWork.end();
+            try {
+                unitOfWork.rollback();
+            } catch (RuntimeException rollbackFailure) {
+                e.addSuppressed(rollbackFailure);
+            }
+            throw e;
+        }
+        UnitOfWork.end();
+        unitOfWork.commit();
+        return result;
+    }
+
+    public void runInTransaction(Runnable work) {
+        inTransaction(() -> {
+            work.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.repository;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The writes made by one thread inside {@link TransactionManager#inTransaction}.
+ *
+ * Repositories still apply each write to their store straight away, so the
+ * transaction reads its own writes, but hand the disk entry and an undo step
+ * to the unit of work instead of submitting it. Commit submits each touched
+ * repository's entries as one batch and then waits for all of them; rollback
+ * runs the undo steps in reverse.
+ */
+final class UnitOfWork {
+
+    private static final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<>();
+
+    private final Map<MainRepository<?>, Changes> changes = new LinkedHashMap<>();
+
+    static UnitOfWork current() {
+        return CURRENT.get();
+    }
+
+    static UnitOfWork begin() {
+        UnitOfWork unitOfWork = new UnitOfWork();
+        CURRENT.set(unitOfWork);
+        return unitOfWork;
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * @param entry the journal record, or null where a snapshot is needed
+     * @param undo restores the store as it was before this write; run under
+     *             the repository's write lock
+     */
+    void record(MainRepository<?> repository, byte[] entry, Runnable undo) {
+        Changes repositoryChanges = changes.computeIfAbsent(repository, k -> new Changes());
+        repositoryChanges.entries.add(entry);
+        repositoryChanges.undo.add(undo);
+    }
+
+    void commit() {
+        Map<MainRepository<?>, Long> tickets = new LinkedHashMap<>();
+        for (Map.Entry<MainRepository<?>, Changes> entry : changes.entrySet()) {
+            tickets.put(entry.getKey(), entry.getKey().submitBatch(entry.getValue().entries));
+        }
+        for (Map.Entry<MainRepository<?>, Long> ticket : tickets.entrySet()) {
+            ticket.getKey().awaitBatch(ticket.getValue());
+        }
+    }
+
+    void rollback() {
+        List<MainRepository<?>> repositories = new ArrayList<>(changes.keySet());
+        RuntimeException failure = null;
+        for (int i = repositories.size() - 1; i >= 0; i--) {
+            try {
+                repositories.get(i).rollBack(changes.get(repositories.get(i)).undo);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static final class Changes {
+        private final List<byte[]> entries = new ArrayList<>();
+        private final List<Runnable> undo = new ArrayList<>();
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.repository;
 
+import com.example.model.Ids;
 import com.example.model.Order;
 import com.example.model.User;
 import org.springframework.beans.factory.annotation.Value;
@@ -16,7 +17,14 @@ public class UserRepository extends MainRepository<User> {
     @Value("${spring.application.userDataPath}")
     private String defaultUserDataPath;
 
-    public UserRepository() {}
+    @Value("${spring.application.userDurability:SYNC}")
+    private Durability durability;
+
+    public static final String BY_NAME = "name";
+
+    public UserRepository() {
+        registerIndex(BY_NAME, User::getName, false);
+    }
 
     @Override
     protected String getDataPath() {
@@ -33,65 +41,52 @@ public class UserRepository extends MainRepository<User> {
         return User[].class;
     }
 
+    @Override
+    protected UUID idOf(User user) {
+        return user.getId();
+    }
+
+    @Override
+    protected Durability getDurability() {
+        return durability;
+    }
+
     public ArrayList<User> getUsers() {
         return findAll();
     }
 
     public User getUserById(UUID userId) {
-        return findAll().stream()
-                .filter(user -> user.getId().equals(userId))
-                .findFirst()
-                .orElse(null);
+        return findById(userId);
     }
 
-    public User addUser(User user) {
-        ArrayList<User> users = findAll();
+    public ArrayList<User> getUsersByName(String name) {
+        return findBy(BY_NAME, name);
+    }
 
+    public User addUser(User user) {
         // Ensure the user has a unique ID
         if (user.getId() == null) {
-            user.setId(UUID.randomUUID());
+            user.setId(Ids.next());
         }
 
-        users.add(user);
-        saveAll(users);
+        save(user);
         return user;
     }
 
-    public List<Order> getOrdersByUserId(UUID userId) {
-        return findAll().stream()
-                .filter(user -> user.getId().equals(userId))
-                .map(User::getOrders)
-                .findFirst()
-                .orElse(new ArrayList<>());
+    public List<UUID> getOrderIdsByUserId(UUID userId) {
+        User user = findById(userId);
+        return user != null ? user.getOrderIds() : new ArrayList<>();
     }
 
     public void addOrderToUser(UUID userId, Order order) {
-        ArrayList<User> users = findAll();
-
-        for (User user : users) {
-            if (user.getId().equals(userId)) {
-                user.getOrders().add(order);
-                saveAll(users);
-                return;
-            }
-        }
+        update(userId, user -> user.getOrderIds().add(order.getId()));
     }
 
     public void removeOrderFromUser(UUID userId, UUID orderId) {
-        ArrayList<User> users = findAll();
-
-        for (User user : users) {
-            if (user.getId().equals(userId)) {
-                user.getOrders().removeIf(order -> order.getId().equals(orderId));
-                saveAll(users);
-                return;
-            }
-        }
+        update(userId, user -> user.getOrderIds().remove(orderId));
     }
 
     public void deleteUserById(UUID userId) {
-        ArrayList<User> users = findAll();
-        users.removeIf(user -> user.getId().equals(userId));
-        saveAll(users);
+        deleteById(userId);
     }
 }
@@ -0,0 +1,161 @@
+package com.example.repository;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.fasterxml.jackson.databind.deser.std.UUIDDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdScalarSerializer;
+import com.fasterxml.jackson.databind.ser.std.UUIDSerializer;
+
+/**
+ * Reads and writes UUIDs without going through String, for the repositories'
+ * ObjectMapper and, as a bean, the one Spring MVC uses.
+ *
+ * Writing formats the 36 characters into a per-thread buffer that the
+ * generator copies from; reading parses the hex digits straight out of the
+ * parser's own character buffer. Anything else, such as binary formats or
+ * text that is not a canonical UUID, is left to Jackson's own UUID handling.
+ */
+@Component
+public class UuidModule extends SimpleModule {
+
+    private static final int LENGTH = 36;
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            VALUES['a' + i] = (byte) (10 + i);
+            VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    public UuidModule() {
+        super("UuidModule");
+        addSerializer(UUID.class, new Serializer());
+        addDeserializer(UUID.class, new Deserializer());
+    }
+
+    /**
+     * Writes the canonical form of the UUID into buffer, which must hold at
+     * least 36 characters.
+     */
+    static void format(UUID uuid, char[] buffer) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        hex(msb >>> 32, buffer, 0, 8);
+        buffer[8] = '-';
+        hex(msb >>> 16, buffer, 9, 4);
+        buffer[13] = '-';
+        hex(msb, buffer, 14, 4);
+        buffer[18] = '-';
+        hex(lsb >>> 48, buffer, 19, 4);
+        buffer[23] = '-';
+        hex(lsb, buffer, 24, 12);
+    }
+
+    /**
+     * Parses a canonical 36-character UUID, in either case.
+     *
+     * @return null if the characters are not one
+     */
+    static UUID parse(char[] chars, int offset, int length) {
+        if (length != LENGTH || chars[offset + 8] != '-' || chars[offset + 13] != '-'
+                || chars[offset + 18] != '-' || chars[offset + 23] != '-') {
+            return null;
+        }
+        long timeLow = value(chars, offset, 8);
+        long timeMid = value(chars, offset + 9, 4);
+        long timeHigh = value(chars, offset + 14, 4);
+        long clockSeq = value(chars, offset + 19, 4);
+        long node = value(chars, offset + 24, 12);
+        if ((timeLow | timeMid | timeHigh | clockSeq | node) < 0) {
+            return null;
+        }
+        return new UUID(timeLow << 32 | timeMid << 16 | timeHigh, clockSeq << 48 | node);
+    }
+
+    private static void hex(long value, char[] buffer, int offset, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            buffer[i] = DIGITS[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    /**
+     * @return the hex number, or -1 if a character is not a hex digit
+     */
+    private static long value(char[] chars, int offset, int digits) {
+        long value = 0;
+        for (int i = offset; i < offset + digits; i++) {
+            char c = chars[i];
+            int digit = c < VALUES.length ? VALUES[c] : -1;
+            if (digit < 0) {
+                return -1;
+            }
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+
+    private static final class Serializer extends StdScalarSerializer<UUID> {
+
+        private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[LENGTH]);
+        private static final UUIDSerializer FALLBACK = new UUIDSerializer();
+
+        Serializer() {
+            super(UUID.class);
+        }
+
+        @Override
+        public boolean isEmpty(SerializerProvider provider, UUID value) {
+            return value.getLeastSignificantBits() == 0L && value.getMostSignificantBits() == 0L;
+        }
+
+        @Override
+        public void serialize(UUID value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            if (gen.canWriteBinaryNatively()) {
+                FALLBACK.serialize(value, gen, provider);
+            } else {
+                char[] buffer = BUFFER.get();
+                format(value, buffer);
+                gen.writeString(buffer, 0, LENGTH);
+            }
+        }
+    }
+
+    private static final class Deserializer extends StdScalarDeserializer<UUID> {
+
+        private static final JsonDeserializer<?> FALLBACK = new UUIDDeserializer();
+
+        Deserializer() {
+            super(UUID.class);
+        }
+
+        @Override
+        public UUID deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (p.currentToken() == JsonToken.VALUE_STRING) {
+                UUID uuid = parse(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+                if (uuid != null) {
+                    return uuid;
+                }
+            }
+            return (UUID) FALLBACK.deserialize(p, ctxt);
+        }
+    }
+}
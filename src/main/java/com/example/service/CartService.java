@@ -1,19 +1,27 @@
 package com.example.service;
 
+import com.example.exceptions.ConcurrentUpdateException;
+import com.example.exceptions.InvalidBatchException;
 import com.example.model.Cart;
 import com.example.model.Product;
 import com.example.repository.CartRepository;
+import com.example.repository.Changes;
 import com.example.repository.MainRepository;
+import com.example.repository.Page;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 @Service
 @SuppressWarnings("rawtypes")
 public class CartService extends MainService<Cart> {
 
+    private static final int MAX_UPDATE_ATTEMPTS = 5;
+
     private final CartRepository cartRepository;
 
     @Autowired
@@ -30,6 +38,22 @@ public class CartService extends MainService<Cart> {
         return cartRepository.getCarts();
     }
 
+    public Page<Cart> findCarts(int limit, String after) {
+        return cartRepository.page(List.of(), cart -> cart, limit, after);
+    }
+
+    public long getCartsRevision() {
+        return cartRepository.getRevision();
+    }
+
+    public long getCartRevision(UUID cartId) {
+        return cartRepository.getRevision(cartId);
+    }
+
+    public Changes<Cart> getChangesSince(long revision) {
+        return cartRepository.changesSince(revision);
+    }
+
     public Cart getCartById(UUID cartId) {
         return cartRepository.getCartById(cartId);
     }
@@ -38,16 +62,90 @@ public class CartService extends MainService<Cart> {
         return cartRepository.getCartByUserId(userId);
     }
 
+    public Cart getOrCreateCartByUserId(UUID userId) {
+        return cartRepository.getOrCreateCartByUserId(userId);
+    }
+
     public void addProductToCart(UUID cartId, Product product) {
-        cartRepository.addProductToCart(cartId, product);
+        updateCart(cartId, cart -> cart.addProduct(product));
+    }
+
+    /**
+     * Appends all the products to the cart in a single write.
+     *
+     * @return false if there is no such cart
+     */
+    public boolean addProductsToCart(UUID cartId, List<Product> products) {
+        if (products == null) {
+            throw new InvalidBatchException("Products cannot be null");
+        }
+        for (int i = 0; i < products.size(); i++) {
+            if (products.get(i) == null || products.get(i).getId() == null) {
+                throw new InvalidBatchException("Product " + i + " must have an id");
+            }
+        }
+        return updateCart(cartId, cart -> {
+            for (Product product : products) {
+                cart.addProduct(product);
+            }
+        }) != null;
+    }
+
+    /**
+     * Sets how many of a product the cart holds; zero removes it.
+     *
+     * @return false if there is no such cart or the product is not in it
+     */
+    public boolean setProductQuantity(UUID cartId, UUID productId, int quantity) {
+        boolean[] inCart = new boolean[1];
+        Cart updated = updateCart(cartId, cart -> inCart[0] = cart.setQuantity(productId, quantity));
+        return updated != null && inCart[0];
     }
 
     public void deleteProductFromCart(UUID cartId, Product product) {
-        cartRepository.deleteProductFromCart(cartId, product);
+        Cart updated = updateCart(cartId, cart -> cart.removeProduct(product.getId()));
+        if (updated == null) {
+            throw new RuntimeException(" Cart not found with ID");
+        }
+    }
+
+    /**
+     * Empties the user's cart in a single write and returns the cart as it
+     * was just before, so the caller sees exactly the products it removed.
+     */
+    public Cart takeCartContents(UUID userId) {
+        for (int attempt = 0; attempt < MAX_UPDATE_ATTEMPTS; attempt++) {
+            Cart cart = cartRepository.getCartByUserId(userId);
+            if (cart == null) {
+                throw new RuntimeException("Cart not found");
+            }
+            Cart emptied = new Cart(cart.getId(), cart.getUserId(), new ArrayList<>());
+            emptied.setVersion(cart.getVersion());
+            if (cartRepository.compareAndSet(emptied)) {
+                return cart;
+            }
+        }
+        throw new ConcurrentUpdateException("Cart was modified concurrently, please retry");
     }
 
     public void deleteCartById(UUID cartId) {
         cartRepository.deleteCartById(cartId);
     }
 
+    // Optimistic read-modify-write: carts are rarely written concurrently, so
+    // re-reading on a version conflict is cheaper than locking every time
+    private Cart updateCart(UUID cartId, Consumer<Cart> change) {
+        for (int attempt = 0; attempt < MAX_UPDATE_ATTEMPTS; attempt++) {
+            Cart cart = cartRepository.findDetachedById(cartId);
+            if (cart == null) {
+                return null;
+            }
+            change.accept(cart);
+            if (cartRepository.compareAndSet(cart)) {
+                return cart;
+            }
+        }
+        throw new ConcurrentUpdateException("Cart was modified concurrently, please retry");
+    }
+
 }
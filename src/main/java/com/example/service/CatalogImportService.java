@@ -0,0 +1,320 @@
+package com.example.service;
+
+import com.example.exceptions.InvalidBatchException;
+import com.example.model.Product;
+import com.example.repository.MainRepository;
+import com.example.repository.ProductRepository;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Imports a product feed, NDJSON or one JSON array, without holding the feed
+ * in memory.
+ *
+ * One thread reads the feed and cuts it into chunks of raw records (lines, or
+ * the tokens of each array element); the chunks are bound to products on a
+ * fork-join pool. At most a few chunks are in flight at a time, and the
+ * results are taken back in feed order and committed in batches, each one
+ * transaction through {@link ProductService#addProducts(List)}. Within a
+ * batch the last record of an id wins; products the catalog already has
+ * unchanged are skipped. Records that cannot be parsed, have no id or are not
+ * valid products are counted as rejected and do not stop the import.
+ */
+@Service
+public class CatalogImportService {
+
+    private static final int DEFAULT_BATCH_SIZE = 10_000;
+    private static final int DEFAULT_CHUNK_SIZE = 1_000;
+    private static final int MAX_JOBS_KEPT = 100;
+
+    @Value("${spring.application.import.directory:imports}")
+    private String importDirectory;
+
+    @Value("${spring.application.import.batchSize:10000}")
+    private int batchSize;
+
+    @Value("${spring.application.import.chunkSize:1000}")
+    private int chunkSize;
+
+    @Value("${spring.application.import.parallelism:0}")
+    private int parallelism;
+
+    private final ProductRepository productRepository;
+    private final ProductService productService;
+    private final ObjectMapper objectMapper;
+    private final Map<UUID, ImportJob> jobs = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, ImportJob> eldest) {
+            return size() > MAX_JOBS_KEPT;
+        }
+    });
+    private ForkJoinPool pool;
+
+    @Autowired
+    public CatalogImportService(MainRepository<Product> productRepository, MainService<Product> productService,
+                                ObjectMapper objectMapper) {
+        this.productRepository = (ProductRepository) productRepository;
+        this.productService = (ProductService) productService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Starts importing a file from the import directory in the background;
+     * poll {@link #getJob(UUID)} for progress.
+     */
+    public ImportJob startImport(String fileName) {
+        Path path = resolveImportFile(fileName);
+        ImportJob job = register();
+        Thread thread = new Thread(() -> {
+            try (InputStream in = Files.newInputStream(path)) {
+                run(in, job);
+            } catch (IOException | RuntimeException e) {
+                job.fail(e);
+            }
+        }, "catalog-import-" + job.getId());
+        thread.setDaemon(true);
+        thread.start();
+        return job;
+    }
+
+    /**
+     * Imports the stream on the calling thread and returns the finished job.
+     * If the feed breaks off, what was committed before stays committed and
+     * the job is marked failed.
+     */
+    public ImportJob importFrom(InputStream in) {
+        ImportJob job = register();
+        try {
+            run(in, job);
+        } catch (IOException | RuntimeException e) {
+            job.fail(e);
+        }
+        return job;
+    }
+
+    public ImportJob getJob(UUID jobId) {
+        return jobs.get(jobId);
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    private ImportJob register() {
+        ImportJob job = new ImportJob();
+        jobs.put(job.getId(), job);
+        return job;
+    }
+
+    private Path resolveImportFile(String fileName) {
+        Path directory = Path.of(importDirectory).toAbsolutePath().normalize();
+        Path path = directory.resolve(fileName).normalize();
+        if (!path.startsWith(directory) || !Files.isRegularFile(path)) {
+            throw new InvalidBatchException("No import file named " + fileName);
+        }
+        return path;
+    }
+
+    private void run(InputStream in, ImportJob job) throws IOException {
+        PushbackInputStream input = new PushbackInputStream(in, 1);
+        Pipeline pipeline = new Pipeline(job);
+        if (firstSignificantByte(input) == '[') {
+            readArray(input, pipeline);
+        } else {
+            readLines(input, pipeline);
+        }
+        pipeline.finish();
+        job.complete();
+    }
+
+    private void readArray(InputStream input, Pipeline pipeline) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(input)) {
+            parser.nextToken();
+            List<Callable<Product>> chunk = new ArrayList<>();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.currentToken() == null) {
+                    throw new IOException("Feed ended inside the array");
+                }
+                TokenBuffer record = new TokenBuffer(parser);
+                record.copyCurrentStructure(parser);
+                chunk.add(() -> {
+                    try (JsonParser recordParser = record.asParser()) {
+                        return objectMapper.readValue(recordParser, ProductRecord.class).toProduct();
+                    }
+                });
+                chunk = pipeline.offer(chunk);
+            }
+            pipeline.submit(chunk);
+        }
+    }
+
+    private void readLines(InputStream input, Pipeline pipeline) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        List<Callable<Product>> chunk = new ArrayList<>();
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            if (line.isBlank()) {
+                continue;
+            }
+            String record = line;
+            chunk.add(() -> objectMapper.readValue(record, ProductRecord.class).toProduct());
+            chunk = pipeline.offer(chunk);
+        }
+        pipeline.submit(chunk);
+    }
+
+    private static int firstSignificantByte(PushbackInputStream input) throws IOException {
+        int next = input.read();
+        while (next != -1 && Character.isWhitespace(next)) {
+            next = input.read();
+        }
+        if (next != -1) {
+            input.unread(next);
+        }
+        return next;
+    }
+
+    private synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        }
+        return pool;
+    }
+
+    private static List<Product> bind(List<Callable<Product>> chunk) {
+        List<Product> products = new ArrayList<>(chunk.size());
+        for (Callable<Product> record : chunk) {
+            try {
+                products.add(record.call());
+            } catch (Exception e) {
+                products.add(null);
+            }
+        }
+        return products;
+    }
+
+    /**
+     * The state of one import between the reader and the commits. Used by the
+     * reading thread only; the pool just runs {@link #bind(List)}.
+     */
+    private final class Pipeline {
+
+        private final ImportJob job;
+        private final ForkJoinPool workers = pool();
+        private final int chunkLimit = chunkSize > 0 ? chunkSize : DEFAULT_CHUNK_SIZE;
+        private final int batchLimit = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+        private final int maxInFlight = workers.getParallelism() * 2;
+        private final ArrayDeque<ForkJoinTask<List<Product>>> inFlight = new ArrayDeque<>();
+        private final LinkedHashMap<UUID, Product> batch = new LinkedHashMap<>();
+        private long duplicates;
+        private long rejected;
+
+        Pipeline(ImportJob job) {
+            this.job = job;
+        }
+
+        /**
+         * Submits the chunk if it is full.
+         *
+         * @return the chunk to keep filling
+         */
+        List<Callable<Product>> offer(List<Callable<Product>> chunk) {
+            if (chunk.size() < chunkLimit) {
+                return chunk;
+            }
+            submit(chunk);
+            return new ArrayList<>(chunkLimit);
+        }
+
+        void submit(List<Callable<Product>> chunk) {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            job.recordRead(chunk.size());
+            inFlight.add(workers.submit(() -> bind(chunk)));
+            while (inFlight.size() > maxInFlight) {
+                collect(inFlight.poll().join());
+            }
+        }
+
+        void finish() {
+            while (!inFlight.isEmpty()) {
+                collect(inFlight.poll().join());
+            }
+            commit();
+        }
+
+        private void collect(List<Product> products) {
+            for (Product product : products) {
+                if (ProductService.problemWith(product) != null) {
+                    rejected++;
+                    continue;
+                }
+                // Re-insert so a repeated id takes the place of its last record
+                if (batch.remove(product.getId()) != null) {
+                    duplicates++;
+                }
+                batch.put(product.getId(), product);
+                if (batch.size() >= batchLimit) {
+                    commit();
+                }
+            }
+        }
+
+        private void commit() {
+            if (batch.isEmpty() && duplicates == 0 && rejected == 0) {
+                return;
+            }
+            List<Product> changed = new ArrayList<>(batch.size());
+            long added = 0;
+            long unchanged = 0;
+            for (Product product : batch.values()) {
+                Product existing = productRepository.findById(product.getId());
+                if (existing == null) {
+                    added++;
+                    changed.add(product);
+                } else if (Objects.equals(existing.getName(), product.getName())
+                        && Double.compare(existing.getPrice(), product.getPrice()) == 0) {
+                    unchanged++;
+                } else {
+                    changed.add(product);
+                }
+            }
+            if (!changed.isEmpty()) {
+                productService.addProducts(changed);
+            }
+            job.recordBatch(added, changed.size() - added, unchanged, duplicates, rejected);
+            batch.clear();
+            duplicates = 0;
+            rejected = 0;
+        }
+    }
+}
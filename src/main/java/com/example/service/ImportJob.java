@@ -0,0 +1,93 @@
+package com.example.service;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of one catalog import, updated by the import as it commits each
+ * batch and safe to read from any thread while it runs.
+ */
+public class ImportJob {
+
+    public enum Status { RUNNING, COMPLETED, FAILED }
+
+    private final UUID id = UUID.randomUUID();
+    private final AtomicLong read = new AtomicLong();
+    private final AtomicLong added = new AtomicLong();
+    private final AtomicLong updated = new AtomicLong();
+    private final AtomicLong unchanged = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private volatile Status status = Status.RUNNING;
+    private volatile String error;
+
+    public UUID getId() {
+        return id;
+    }
+
+    /** Records read from the feed so far. */
+    public long getRead() {
+        return read.get();
+    }
+
+    /** Committed products that were not in the catalog. */
+    public long getAdded() {
+        return added.get();
+    }
+
+    /** Committed products that replaced a different version. */
+    public long getUpdated() {
+        return updated.get();
+    }
+
+    /** Products skipped because the catalog already had them as they are. */
+    public long getUnchanged() {
+        return unchanged.get();
+    }
+
+    /** Products skipped because a later record in the same batch had their id. */
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+
+    /** Records that could not be parsed or were not valid products. */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /** Batches committed so far. */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    void recordRead(long count) {
+        read.addAndGet(count);
+    }
+
+    void recordBatch(long addedCount, long updatedCount, long unchangedCount, long duplicateCount, long rejectedCount) {
+        added.addAndGet(addedCount);
+        updated.addAndGet(updatedCount);
+        unchanged.addAndGet(unchangedCount);
+        duplicates.addAndGet(duplicateCount);
+        rejected.addAndGet(rejectedCount);
+        batches.incrementAndGet();
+    }
+
+    void complete() {
+        status = Status.COMPLETED;
+    }
+
+    void fail(Throwable cause) {
+        error = cause.getMessage();
+        status = Status.FAILED;
+    }
+}
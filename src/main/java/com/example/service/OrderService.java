@@ -2,12 +2,16 @@ package com.example.service;
 
 import com.example.exceptions.order.OrderNotFoundException;
 import com.example.model.Order;
+import com.example.repository.FieldFilter;
 import com.example.repository.MainRepository;
 import com.example.repository.OrderRepository;
+import com.example.repository.Page;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.UUID;
 
 @Service
@@ -29,10 +33,38 @@ public class OrderService extends MainService<Order> {
       return orderRepository.getOrders();
     }
 
+    public long getOrdersRevision(){
+      return orderRepository.getRevision();
+    }
+
+    public long getOrderRevision(UUID orderId){
+      return orderRepository.getRevision(orderId);
+    }
+
+    public Iterator<Order> iterateOrders(){
+      return orderRepository.iterateAll();
+    }
+
+    public Page<Order> findOrders(Double minTotal, Double maxTotal, int limit, String after){
+      List<FieldFilter<Order>> filters = new ArrayList<>();
+      if (minTotal != null || maxTotal != null) {
+        filters.add(FieldFilter.between("totalPrice", Order::getTotalPrice, minTotal, maxTotal));
+      }
+      return orderRepository.page(filters, order -> order, limit, after);
+    }
+
     public Order getOrderById(UUID orderId) throws OrderNotFoundException {
       return orderRepository.getOrderById(orderId);
     }
 
+    public ArrayList<Order> getOrdersOfUser(UUID userId) {
+      return orderRepository.getOrdersByUserId(userId);
+    }
+
+    public ArrayList<Order> getOrdersByIds(List<UUID> orderIds) {
+      return orderRepository.findAllById(orderIds);
+    }
+
     public void deleteOrderById(UUID orderId) throws OrderNotFoundException{
       orderRepository.deleteOrderById(orderId);
     }
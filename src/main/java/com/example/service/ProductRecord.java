@@ -0,0 +1,32 @@
+package com.example.service;
+
+import com.example.model.Product;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A product as it comes in through a bulk request or an import feed. Unlike
+ * {@link Product} it gets no generated id, so a record without one can be
+ * told apart and rejected instead of being added as a new product.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ProductRecord(UUID id, String name, double price) {
+
+    public Product toProduct() {
+        return new Product(id, name, price);
+    }
+
+    public static List<Product> toProducts(List<ProductRecord> records) {
+        if (records == null) {
+            return null;
+        }
+        List<Product> products = new ArrayList<>(records.size());
+        for (ProductRecord record : records) {
+            products.add(record != null ? record.toProduct() : null);
+        }
+        return products;
+    }
+}
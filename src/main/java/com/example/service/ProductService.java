@@ -1,10 +1,18 @@
 package com.example.service;
 
+import com.example.exceptions.InvalidBatchException;
+import com.example.repository.Changes;
+import com.example.repository.FieldFilter;
 import com.example.repository.MainRepository;
+import com.example.repository.Page;
+import com.example.repository.TransactionManager;
 import org.springframework.stereotype.Service;
 import org.springframework.beans.factory.annotation.Autowired;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import com.example.model.Product;
 import com.example.repository.ProductRepository;
@@ -14,20 +22,65 @@ import com.example.repository.ProductRepository;
 public class ProductService extends MainService<Product> {
 
     private final ProductRepository productRepository;
+    private final TransactionManager transactionManager;
 
     @Autowired
-    public ProductService(MainRepository<Product> productRepository) {
+    public ProductService(MainRepository<Product> productRepository, TransactionManager transactionManager) {
         this.productRepository = (ProductRepository) productRepository;
+        this.transactionManager = transactionManager;
     }
 
     public Product addProduct(Product product) {
         return productRepository.addProduct(product);
     }
 
+    /**
+     * Adds or replaces all the products as one transaction, so the batch is
+     * written once instead of once per product. The whole batch is checked
+     * first and rejected if any product is invalid.
+     */
+    public List<Product> addProducts(List<Product> products) {
+        validateProducts(products);
+        return transactionManager.inTransaction(() -> {
+            for (Product product : products) {
+                productRepository.addProduct(product);
+            }
+            return products;
+        });
+    }
+
     public ArrayList<Product> getProducts() {
         return productRepository.getProducts();
     }
 
+    public long getCatalogRevision() {
+        return productRepository.getRevision();
+    }
+
+    public long getProductRevision(UUID productId) {
+        return productRepository.getRevision(productId);
+    }
+
+    public ArrayList<Product> getProductsByIds(List<UUID> productIds) {
+        return productRepository.findAllById(productIds);
+    }
+
+    public Changes<Product> getChangesSince(long revision) {
+        return productRepository.changesSince(revision);
+    }
+
+    public Iterator<Product> iterateProducts() {
+        return productRepository.iterateAll();
+    }
+
+    public Page<Product> findProducts(Double minPrice, Double maxPrice, int limit, String after) {
+        List<FieldFilter<Product>> filters = new ArrayList<>();
+        if (minPrice != null || maxPrice != null) {
+            filters.add(FieldFilter.between("price", Product::getPrice, minPrice, maxPrice));
+        }
+        return productRepository.page(filters, product -> product, limit, after);
+    }
+
     public Product getProductById(UUID productId) {
         return productRepository.getProductById(productId);
     }
@@ -36,18 +89,12 @@ public class ProductService extends MainService<Product> {
         return productRepository.updateProduct(productId, newName, newPrice);
     }
 
+    /**
+     * Updates the products as one transaction, so the file is written once for
+     * the whole discount rather than once per product.
+     */
     public void applyDiscount(double discount, List<UUID> productIds) {
-        ArrayList<Product> allProducts = productRepository.getProducts();
-
-        for (Product product : allProducts) {
-            if (productIds.contains(product.getId())) {
-                double newPrice = product.getPrice() * (1 - discount/100.0);
-                newPrice = Math.round(newPrice * 100.0) / 100.0;
-                product.setPrice(newPrice);
-            }
-        }
-
-        productRepository.saveAll(allProducts);
+        transactionManager.runInTransaction(() -> productRepository.applyDiscountToProducts(discount, productIds));
     }
 
     public void deleteProductById(UUID productId) {
@@ -68,17 +115,43 @@ public class ProductService extends MainService<Product> {
                 return null;
             }
 
-            // Get all products and find the one with matching ID
-            List<Product> products = productRepository.findAll();
-            for (Product product : products) {
-                if (product.getId().equals(productId)) {
-                    return product;
-                }
-            }
+            return productRepository.findById(productId);
         }
 
         // For other entity types, add similar code here
 
         return null; // Entity not found
     }
+
+    private void validateProducts(List<Product> products) {
+        if (products == null) {
+            throw new InvalidBatchException("Products cannot be null");
+        }
+        Set<UUID> ids = new HashSet<>();
+        for (int i = 0; i < products.size(); i++) {
+            String problem = problemWith(products.get(i));
+            if (problem != null) {
+                throw new InvalidBatchException("Product " + i + " " + problem);
+            }
+            if (!ids.add(products.get(i).getId())) {
+                throw new InvalidBatchException("Product " + i + " repeats id " + products.get(i).getId());
+            }
+        }
+    }
+
+    /**
+     * @return what is wrong with the product, or null if it can be stored
+     */
+    static String problemWith(Product product) {
+        if (product == null || product.getId() == null) {
+            return "must have an id";
+        }
+        if (product.getName() == null || product.getName().isBlank()) {
+            return "must have a name";
+        }
+        if (!(product.getPrice() >= 0) || Double.isInfinite(product.getPrice())) {
+            return "must have a non-negative price";
+        }
+        return null;
+    }
 }
\ No newline at end of file
@@ -1,10 +1,14 @@
 package com.example.service;
 
 import com.example.model.Cart;
+import com.example.model.CartLine;
 import com.example.model.Order;
 import com.example.model.Product;
 import com.example.model.User;
+import com.example.repository.FieldFilter;
 import com.example.repository.MainRepository;
+import com.example.repository.Page;
+import com.example.repository.TransactionManager;
 import com.example.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -17,13 +21,18 @@ public class UserService extends MainService<User> {
 
     private final UserRepository userRepository;
     private final OrderService orderService;
+    private final ProductService productService;
     private final CartService cartService;
+    private final TransactionManager transactionManager;
 
     @Autowired
-    public UserService(MainRepository<User> userRepository, MainService<Order> orderService, MainService<Cart> cartService) {
+    public UserService(MainRepository<User> userRepository, MainService<Order> orderService, MainService<Cart> cartService,
+                       MainService<Product> productService, TransactionManager transactionManager) {
         this.userRepository = (UserRepository) userRepository;
         this.orderService = (OrderService) orderService;
         this.cartService = (CartService) cartService;
+        this.productService = (ProductService) productService;
+        this.transactionManager = transactionManager;
     }
 
     public User addUser(User user) {
@@ -34,43 +43,89 @@ public class UserService extends MainService<User> {
         return userRepository.getUsers();
     }
 
-    public User getUserById(UUID userId) {
-        return userRepository.getUserById(userId);
+    public Page<User> findUsers(Boolean hasOrders, int limit, String after) {
+        List<FieldFilter<User>> filters = new ArrayList<>();
+        if (hasOrders != null) {
+            filters.add(FieldFilter.hasElements("orders", User::getOrderIds, hasOrders));
+        }
+        return userRepository.page(filters, user -> user, limit, after);
     }
 
-    public List<Order> getOrdersByUserId(UUID userId) {
-        return userRepository.getOrdersByUserId(userId);
+    public long getUsersRevision() {
+        return userRepository.getRevision();
     }
 
-    public void addOrderToUser(UUID userId) {
-        Cart cart = cartService.getCartByUserId(userId);
+    public long getUserRevision(UUID userId) {
+        return userRepository.getRevision(userId);
+    }
 
-        if (cart == null) {
-            throw new RuntimeException("Cart not found");
-        }
+    public User getUserById(UUID userId) {
+        return userRepository.getUserById(userId);
+    }
 
-        List<Product> products = cart.getProducts();
+    public ArrayList<User> getUsersByIds(List<UUID> userIds) {
+        return userRepository.findAllById(userIds);
+    }
 
-        double totalPrice = 0;
-        for (Product product : products) {
-            totalPrice += product.getPrice();
+    /**
+     * The user's orders, in the order they were placed. Users store only
+     * order ids; the orders are looked up through the orders' by-user index.
+     */
+    public List<Order> getOrdersByUserId(UUID userId) {
+        List<UUID> orderIds = userRepository.getOrderIdsByUserId(userId);
+        if (orderIds.isEmpty()) {
+            return new ArrayList<>();
         }
+        Map<UUID, Order> byId = new HashMap<>();
+        for (Order order : orderService.getOrdersOfUser(userId)) {
+            byId.put(order.getId(), order);
+        }
+        List<Order> orders = new ArrayList<>(orderIds.size());
+        for (UUID orderId : orderIds) {
+            Order order = byId.get(orderId);
+            if (order != null) {
+                orders.add(order);
+            }
+        }
+        return orders;
+    }
 
-        Order order = new Order(userId, totalPrice, products);
-        orderService.addOrder(order);
-        userRepository.addOrderToUser(userId, order);
-
-        emptyCart(userId);
+    /**
+     * Checks out the user's cart in one transaction: one write each to carts,
+     * orders and users, and none of them if any step fails. The cart is
+     * emptied first, so its products can only end up in one order.
+     *
+     * Lines are priced from the catalog as it is now; a product no longer in
+     * the catalog keeps the snapshot it was added with.
+     */
+    public void addOrderToUser(UUID userId) {
+        transactionManager.runInTransaction(() -> {
+            Cart cart = cartService.takeCartContents(userId);
+            List<CartLine> lines = new ArrayList<>(cart.getLines());
+            List<UUID> productIds = new ArrayList<>(lines.size());
+            for (CartLine line : lines) {
+                productIds.add(line.getProduct().getId());
+            }
+            List<Product> current = productService.getProductsByIds(productIds);
+
+            List<Product> products = new ArrayList<>();
+            double totalPrice = 0;
+            for (int i = 0; i < lines.size(); i++) {
+                Product product = current.get(i) != null ? current.get(i) : lines.get(i).getProduct();
+                for (int unit = 0; unit < lines.get(i).getQuantity(); unit++) {
+                    products.add(product);
+                    totalPrice += product.getPrice();
+                }
+            }
+
+            Order order = new Order(userId, totalPrice, products);
+            orderService.addOrder(order);
+            userRepository.addOrderToUser(userId, order);
+        });
     }
 
     public void emptyCart(UUID userId) {
-        Cart cart = cartService.getCartByUserId(userId);
-        if (cart == null) {
-            throw new RuntimeException("Cart not found");
-        }
-        for (Product product : cart.getProducts()) {
-            cartService.deleteProductFromCart(cart.getId(), product);
-        }
+        cartService.takeCartContents(userId);
     }
 
     public void removeOrderFromUser(UUID userId, UUID orderId) {
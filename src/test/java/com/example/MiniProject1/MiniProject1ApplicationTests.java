@@ -1,6 +1,7 @@
  package com.example.MiniProject1;
 
  import static org.junit.jupiter.api.Assertions.assertEquals;
+ import static org.junit.jupiter.api.Assertions.assertFalse;
  import static org.junit.jupiter.api.Assertions.assertNotNull;
  import static org.junit.jupiter.api.Assertions.assertNull;
  import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -42,7 +43,7 @@
  import com.fasterxml.jackson.core.type.TypeReference;
  import com.fasterxml.jackson.databind.ObjectMapper;
  @ComponentScan(basePackages = "com.example.*")
- @WebMvcTest
+ @WebMvcTest(properties = "spring.application.fileCheckIntervalMs=0")
  class MiniProject1ApplicationTests {
 
  	@Value("${spring.application.userDataPath}")
@@ -330,8 +331,9 @@
  		testUser10.setId(UUID.randomUUID());
  		testUser10.setName("Test User10");
  		List<Order> orders = List.of(new Order(UUID.randomUUID(), testUser10.getId(), 10.0, List.of(new Product(UUID.randomUUID(), "Test Product", 10.0))));
- 		testUser10.setOrders(orders);
+ 		testUser10.setOrderIds(new ArrayList<>(List.of(orders.get(0).getId())));
  		addUser(testUser10);
+ 		addOrder(orders.get(0));
  		mockMvc.perform(MockMvcRequestBuilders.get("/user/{userId}/orders", testUser10.getId()))
  				.andExpect(MockMvcResultMatchers.status().isOk())
  				.andExpect(MockMvcResultMatchers.content().json(objectMapper.writeValueAsString(orders)));
@@ -359,6 +361,24 @@
  	}
 
 
+ 	@Test
+ 	void testAddProductsToCartEndPoint() throws Exception{
+ 		Cart cart=new Cart(UUID.randomUUID(), UUID.randomUUID(), new ArrayList<>());
+ 		addCart(cart);
+ 		List<Product> products=List.of(new Product(UUID.randomUUID(), "Cart Product 1", 10.0),
+ 				new Product(UUID.randomUUID(), "Cart Product 2", 20.0));
+
+ 		mockMvc.perform(MockMvcRequestBuilders.put("/cart/{cartId}/items", cart.getId())
+ 				.contentType(MediaType.APPLICATION_JSON)
+ 				.content(objectMapper.writeValueAsString(products)))
+ 				.andExpect(MockMvcResultMatchers.status().isOk())
+ 				.andExpect(MockMvcResultMatchers.content().string("Products added to cart"));
+
+ 		Cart stored=getCarts().stream().filter(c -> c.getId().equals(cart.getId())).findFirst().orElseThrow();
+ 		assertEquals(2, stored.getProducts().size(), "Both products should be added to the cart");
+ 	}
+
+
  	@Test
  	void testRemoveOrderOfUserEndPoint() throws Exception{
  		User testUser12=new User();
@@ -366,7 +386,7 @@
  		testUser12.setName("Test User12");
  		Product product = new Product(UUID.randomUUID(), "Test Product", 100.0);
  		Order order = new Order(UUID.randomUUID(), testUser12.getId(), 100.0, List.of(product));
- 		testUser12.getOrders().add(order);
+ 		testUser12.getOrderIds().add(order.getId());
  		addUser(testUser12);
  		addOrder(order);
 
@@ -527,6 +547,25 @@
  	}
 
 
+ 	@Test
+ 	void testExportProductsAsNdjsonEndPoint() throws Exception{
+ 		Product testProduct7=new Product(UUID.randomUUID(), "Test Product", 10.0);
+ 		addProduct(testProduct7);
+
+ 		MvcResult result= mockMvc.perform(MockMvcRequestBuilders.get("/product/")
+ 				.accept(MediaType.APPLICATION_NDJSON))
+ 				.andExpect(MockMvcResultMatchers.request().asyncStarted())
+ 				.andReturn();
+ 		String responseContent = mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+ 				.andExpect(MockMvcResultMatchers.status().isOk())
+ 				.andReturn().getResponse().getContentAsString();
+ 		String[] lines = responseContent.split("\n");
+
+ 		assertEquals(getProducts().size(), lines.length, "Every product should be exported on its own line");
+ 		assertEquals(testProduct7.getId(), objectMapper.readValue(lines[lines.length - 1], Product.class).getId());
+ 	}
+
+
  	@Test
  	void testGetProductByIdEndPoint() throws Exception{
  		Product testProduct9=new Product();
@@ -541,6 +580,71 @@
  	}
 
 
+ 	@Test
+ 	void testGetProductsBatchEndPoint() throws Exception{
+ 		Product first=new Product(UUID.randomUUID(), "Batch Product 1", 10.0);
+ 		Product second=new Product(UUID.randomUUID(), "Batch Product 2", 20.0);
+ 		addProduct(first);
+ 		addProduct(second);
+ 		UUID missingId=UUID.randomUUID();
+ 		List<UUID> ids=List.of(second.getId(), missingId, first.getId());
+
+ 		mockMvc.perform(MockMvcRequestBuilders.post("/product/batch")
+ 				.contentType(MediaType.APPLICATION_JSON)
+ 				.content(objectMapper.writeValueAsString(ids)))
+ 				.andExpect(MockMvcResultMatchers.status().isOk())
+ 				.andExpect(MockMvcResultMatchers.jsonPath("$.items[0].name").value("Batch Product 2"))
+ 				.andExpect(MockMvcResultMatchers.jsonPath("$.items[1]").isEmpty())
+ 				.andExpect(MockMvcResultMatchers.jsonPath("$.items[2].name").value("Batch Product 1"))
+ 				.andExpect(MockMvcResultMatchers.jsonPath("$.missing[0]").value(missingId.toString()));
+ 	}
+
+
+ 	@Test
+ 	void testAddProductsBulkEndPoint() throws Exception{
+ 		List<Product> products=List.of(new Product(UUID.randomUUID(), "Bulk Product 1", 5.0),
+ 				new Product(UUID.randomUUID(), "Bulk Product 2", 7.5));
+
+ 		mockMvc.perform(MockMvcRequestBuilders.post("/product/bulk")
+ 				.contentType(MediaType.APPLICATION_JSON)
+ 				.content(objectMapper.writeValueAsString(products)))
+ 				.andExpect(MockMvcResultMatchers.status().isOk());
+
+ 		List<UUID> stored=getProducts().stream().map(Product::getId).toList();
+ 		assertTrue(stored.contains(products.get(0).getId()) && stored.contains(products.get(1).getId()), "All products should be added");
+ 	}
+
+ 	@Test
+ 	void testAddProductsBulkEndPointRejectsProductWithoutId() throws Exception{
+ 		int before = getProducts().size();
+
+ 		mockMvc.perform(MockMvcRequestBuilders.post("/product/bulk")
+ 				.contentType(MediaType.APPLICATION_JSON)
+ 				.content("[{\"name\":\"a\",\"price\":1.0}]"))
+ 				.andExpect(MockMvcResultMatchers.status().isBadRequest());
+ 		assertEquals(before, getProducts().size(), "No product should be added");
+ 	}
+
+ 	@Test
+ 	void testGetProductsEndPointRejectsNegativeLimit() throws Exception{
+ 		mockMvc.perform(MockMvcRequestBuilders.get("/product/").param("limit", "-1"))
+ 				.andExpect(MockMvcResultMatchers.status().isBadRequest());
+ 	}
+
+ 	@Test
+ 	void testAddProductsBulkEndPointRejectsInvalidBatch() throws Exception{
+ 		List<Product> products=List.of(new Product(UUID.randomUUID(), "Valid Product", 5.0),
+ 				new Product(UUID.randomUUID(), "Invalid Product", -1.0));
+
+ 		mockMvc.perform(MockMvcRequestBuilders.post("/product/bulk")
+ 				.contentType(MediaType.APPLICATION_JSON)
+ 				.content(objectMapper.writeValueAsString(products)))
+ 				.andExpect(MockMvcResultMatchers.status().isBadRequest());
+
+ 		assertFalse(getProducts().stream().anyMatch(p -> p.getId().equals(products.get(0).getId())), "Nothing of a rejected batch should be added");
+ 	}
+
+
  	@Test
  	void testUpdateProductEndPoint() throws Exception{
  		Product testProduct12=new Product();
@@ -564,6 +668,33 @@
  	}
 
 
+ 	@Test
+ 	void testGetProductsEndPointAfterUpdate() throws Exception{
+ 		Product testProduct13=new Product(UUID.randomUUID(), "Test Product", 10.0);
+ 		addProduct(testProduct13);
+ 		mockMvc.perform(MockMvcRequestBuilders.get("/product/"))
+ 				.andExpect(MockMvcResultMatchers.status().isOk());
+ 		mockMvc.perform(MockMvcRequestBuilders.get("/product/{id}", testProduct13.getId()))
+ 				.andExpect(MockMvcResultMatchers.status().isOk());
+ 		Map<String,Object> body=new HashMap<>();
+ 		body.put("newName", "UpdatedName");
+ 		body.put("newPrice", 20.0);
+ 		mockMvc.perform(MockMvcRequestBuilders.put("/product/update/{id}", testProduct13.getId())
+ 				.contentType(MediaType.APPLICATION_JSON)
+ 				.content(objectMapper.writeValueAsString(body)))
+ 				.andExpect(MockMvcResultMatchers.status().isOk());
+
+ 		String product = mockMvc.perform(MockMvcRequestBuilders.get("/product/{id}", testProduct13.getId()))
+ 				.andReturn().getResponse().getContentAsString();
+ 		String products = mockMvc.perform(MockMvcRequestBuilders.get("/product/"))
+ 				.andReturn().getResponse().getContentAsString();
+ 		List<Product> responseProducts = objectMapper.readValue(products, new TypeReference<List<Product>>() {});
+
+ 		assertEquals("UpdatedName", objectMapper.readValue(product, Product.class).getName(), "Cached product should not be served after an update");
+ 		assertTrue(responseProducts.stream().anyMatch(p -> p.getName().equals("UpdatedName")), "Cached catalog should not be served after an update");
+ 	}
+
+
  	@Test
  	void testApplyDiscountEndPoint() throws Exception{
  		Product testProduct15=new Product();
@@ -657,6 +788,38 @@
 
 
 
+ 	@Test
+ 	void testGetCartByIdEndPointReturnsProductsAndLines() throws Exception{
+ 		UUID productId = UUID.randomUUID();
+ 		Product product = new Product(productId, "Pen", 2.0);
+ 		Cart cart = new Cart(UUID.randomUUID(), UUID.randomUUID(), List.of(product, product));
+ 		addCart(cart);
+ 		String pen = "{\"id\":\"" + productId + "\",\"name\":\"Pen\",\"price\":2.0}";
+ 		mockMvc.perform(MockMvcRequestBuilders.get("/cart/{id}", cart.getId()))
+ 				.andExpect(MockMvcResultMatchers.status().isOk())
+ 				.andExpect(MockMvcResultMatchers.content().json("{\"id\":\"" + cart.getId() + "\",\"userId\":\"" + cart.getUserId()
+ 						+ "\",\"products\":[" + pen + "," + pen + "],\"lines\":[{\"product\":" + pen + ",\"quantity\":2}]}"));
+ 	}
+
+ 	@Test
+ 	void testGetCartByIdEndPointWithETag() throws Exception{
+ 		Cart cart = new Cart(UUID.randomUUID(), UUID.randomUUID(), new ArrayList<>());
+ 		addCart(cart);
+ 		// ETags come from the loaded store; a cold lookup is served without one
+ 		cartService.getCarts();
+ 		String etag = mockMvc.perform(MockMvcRequestBuilders.get("/cart/{id}", cart.getId()))
+ 				.andExpect(MockMvcResultMatchers.status().isOk())
+ 				.andReturn().getResponse().getHeader("ETag");
+ 		assertNotNull(etag, "Cart should be returned with an ETag");
+
+ 		mockMvc.perform(MockMvcRequestBuilders.get("/cart/{id}", cart.getId()).header("If-None-Match", etag))
+ 				.andExpect(MockMvcResultMatchers.status().isNotModified());
+ 		cartService.addProductToCart(cart.getId(), new Product(UUID.randomUUID(), "Test Product", 10.0));
+ 		mockMvc.perform(MockMvcRequestBuilders.get("/cart/{id}", cart.getId()).header("If-None-Match", etag))
+ 				.andExpect(MockMvcResultMatchers.status().isOk());
+ 	}
+
+
  	@Test
  	void testDeleteCartByIdEndPoint() throws Exception{
  		Cart cart = new Cart(UUID.randomUUID(), UUID.randomUUID(), new ArrayList<>());
@@ -0,0 +1,889 @@
+package com.example.MiniProject1;
+
+import com.example.exceptions.DuplicateKeyException;
+import com.example.exceptions.WriteTimeoutException;
+import com.example.model.Cart;
+import com.example.model.Order;
+import com.example.model.Product;
+import com.example.model.User;
+import com.example.repository.CartRepository;
+import com.example.repository.Changes;
+import com.example.repository.Durability;
+import com.example.repository.FieldFilter;
+import com.example.repository.OrderRepository;
+import com.example.repository.Page;
+import com.example.repository.ProductRepository;
+import com.example.repository.TransactionManager;
+import com.example.repository.UserRepository;
+import com.example.repository.UuidModule;
+import com.example.service.CartService;
+import com.example.service.CatalogImportService;
+import com.example.service.ImportJob;
+import com.example.service.OrderService;
+import com.example.service.ProductService;
+import com.example.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistenceTests {
+
+    @TempDir
+    Path dataDir;
+
+    private ProductRepository journaledRepository(Path dataFile) {
+        ProductRepository repository = new ProductRepository();
+        ReflectionTestUtils.setField(repository, "defaultProductDataPath", dataFile.toString());
+        ReflectionTestUtils.setField(repository, "journalEnabled", true);
+        return repository;
+    }
+
+    private CatalogImportService importService(ProductRepository repository, int batchSize, int chunkSize) {
+        CatalogImportService importService = new CatalogImportService(repository,
+                new ProductService(repository, new TransactionManager()), new ObjectMapper());
+        ReflectionTestUtils.setField(importService, "batchSize", batchSize);
+        ReflectionTestUtils.setField(importService, "chunkSize", chunkSize);
+        ReflectionTestUtils.setField(importService, "parallelism", 2);
+        return importService;
+    }
+
+    private UserService checkoutService(UserRepository users, CartRepository carts, OrderRepository orders) {
+        ReflectionTestUtils.setField(users, "defaultUserDataPath", dataDir.resolve("users.json").toString());
+        ReflectionTestUtils.setField(carts, "defaultCartDataPath", dataDir.resolve("carts.json").toString());
+        ReflectionTestUtils.setField(orders, "defaultOrderDataPath", dataDir.resolve("orders.json").toString());
+        for (Object repository : List.of(users, carts, orders)) {
+            ReflectionTestUtils.setField(repository, "journalEnabled", true);
+        }
+        ProductRepository products = journaledRepository(dataDir.resolve("products.json"));
+        TransactionManager transactionManager = new TransactionManager();
+        return new UserService(users, new OrderService(orders), new CartService(carts),
+                new ProductService(products, transactionManager), transactionManager);
+    }
+
+    private int journalLines(String dataFileName) throws IOException {
+        Path journal = dataDir.resolve(dataFileName + ".journal");
+        return Files.exists(journal) ? Files.readAllLines(journal).size() : 0;
+    }
+
+    @Test
+    void journal_save_ShouldAppendInsteadOfRewritingDataFile() throws IOException {
+        // Arrange
+        Path dataFile = dataDir.resolve("products.json");
+        Files.writeString(dataFile, "[]");
+        ProductRepository repository = journaledRepository(dataFile);
+
+        // Act
+        repository.addProduct(new Product("Laptop", 1200.0));
+        repository.addProduct(new Product("Mouse", 50.0));
+
+        // Assert
+        assertEquals("[]", Files.readString(dataFile), "Data file should not be rewritten");
+        assertEquals(2, Files.readAllLines(dataDir.resolve("products.json.journal")).size());
+    }
+
+    @Test
+    void journal_newRepository_ShouldReplaySnapshotAndJournal() throws IOException {
+        // Arrange
+        Path dataFile = dataDir.resolve("products.json");
+        Product kept = new Product("Keyboard", 100.0);
+        Product updated = new Product("Monitor", 300.0);
+        Product deleted = new Product("Cable", 5.0);
+        ProductRepository writer = journaledRepository(dataFile);
+        writer.addProduct(kept);
+        writer.addProduct(updated);
+        writer.addProduct(deleted);
+        writer.updateProduct(updated.getId(), "Monitor 4K", 450.0);
+        writer.deleteProductById(deleted.getId());
+
+        // Act
+        ProductRepository reader = journaledRepository(dataFile);
+
+        // Assert
+        assertEquals(2, reader.getProducts().size());
+        assertEquals("Keyboard", reader.getProductById(kept.getId()).getName());
+        assertEquals(450.0, reader.getProductById(updated.getId()).getPrice());
+        assertNull(reader.getProductById(deleted.getId()));
+    }
+
+    @Test
+    void journal_tornLastRecord_ShouldBeIgnored() throws IOException {
+        // Arrange
+        Path dataFile = dataDir.resolve("products.json");
+        Product product = new Product("Tablet", 500.0);
+        journaledRepository(dataFile).addProduct(product);
+        Files.writeString(dataDir.resolve("products.json.journal"),
+                "{\"op\":\"D\",\"id\":\"" + UUID.randomUUID(), StandardOpenOption.APPEND);
+
+        // Act
+        ProductRepository reader = journaledRepository(dataFile);
+        Product added = reader.addProduct(new Product("Stylus", 30.0));
+
+        // Assert
+        assertNotNull(reader.getProductById(product.getId()));
+        assertNotNull(journaledRepository(dataFile).getProductById(added.getId()),
+                "A record appended after a torn one should be replayed");
+    }
+
+    @Test
+    void journal_unreadableRecordBeforeTheEnd_ShouldFailTheLoadAndKeepTheJournal() throws IOException {
+        // Arrange
+        Path dataFile = dataDir.resolve("products.json");
+        Path journalFile = dataDir.resolve("products.json.journal");
+        ProductRepository writer = journaledRepository(dataFile);
+        writer.addProduct(new Product("Pen", 2.0));
+        writer.addProduct(new Product("Bag", 40.0));
+        List<String> records = new ArrayList<>(Files.readAllLines(journalFile));
+        records.add(1, "{\"op\":\"U\",\"data\":{\"id\":\"" + UUID.randomUUID() + "\",\"colour\":\"red\"}}");
+        Files.write(journalFile, records);
+
+        // Act & Assert
+        assertThrows(RuntimeException.class, () -> journaledRepository(dataFile).findAll());
+        assertEquals(3, Files.readAllLines(journalFile).size(), "The journal should be left for repair");
+    }
+
+    @Test
+    void journal_saveAll_ShouldWriteSnapshotAndDropJournal() throws IOException {
+        // Arrange
+        Path dataFile = dataDir.resolve("products.json");
+        ProductRepository repository = journaledRepository(dataFile);
+        repository.addProduct(new Product("Phone", 800.0));
+
+        // Act
+        repository.saveAll(repository.getProducts());
+
+        // Assert
+        assertFalse(Files.exists(dataDir.resolve("products.json.journal")));
+        assertEquals(1, journaledRepository(dataFile).getProducts().size());
+    }
+
+    @Test
+    void compactIfNeeded_belowThresholds_ShouldKeepJournal() throws IOException {
+        // Arrange
+        Path dataFile = dataDir.resolve("products.json");
+        ProductRepository repository = journaledRepository(dataFile);
+        repository.addProduct(new Product("Headphones", 50.0));
+
+        // Act
+        boolean compacted = repository.compactIfNeeded(Long.MAX_VALUE, 10, Long.MAX_VALUE);
+
+        // Assert
+        assertFalse(compacted);
+        assertTrue(Files.exists(dataDir.resolve("products.json.journal")));
+    }
+
+    @Test
+    void compactIfNeeded_recordThresholdReached_ShouldSnapshotAndTruncateJournal() throws IOException {
+        // Arrange
+        Path dataFile = dataDir.resolve("products.json");
+        ProductRepository repository = journaledRepository(dataFile);
+        Product first = new Product("TV", 1400.0);
+        repository.addProduct(first);
+        repository.addProduct(new Product("Console", 500.0));
+        repository.deleteProductById(first.getId());
+
+        // Act
+        boolean compacted = repository.compactIfNeeded(Long.MAX_VALUE, 3, Long.MAX_VALUE);
+
+        // Assert
+        assertTrue(compacted);
+        assertFalse(Files.exists(dataDir.resolve("products.json.journal")));
+        assertFalse(Files.exists(dataDir.resolve("products.json.tmp")));
+        assertTrue(Files.readString(dataFile).contains("Console"));
+        assertEquals(1, journaledRepository(dataFile).getProducts().size());
+    }
+
+    @Test
+    void groupCommit_concurrentBatchedWrites_ShouldAllBeDurable() throws Exception {
+        // Arrange
+        Path dataFile = dataDir.resolve("products.json");
+        ProductRepository repository = journaledRepository(dataFile);
+        ReflectionTestUtils.setField(repository, "durability", Durability.BATCHED);
+        ReflectionTestUtils.setField(repository, "groupCommitIntervalMs", 2L);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // Act
+        List<Future<?>> writes = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            int n = i;
+            writes.add(executor.submit(() -> repository.addProduct(new Product("Item " + n, n))));
+        }
+        for (Future<?> write : writes) {
+            write.get();
+        }
+        executor.shutdown();
+
+        // Assert
+        assertEquals(200, Files.readAllLines(dataDir.resolve("products.json.journal")).size());
+        assertEquals(200, journaledRepository(dataFile).getProducts().size());
+    }
+
+    @Test
+    void groupCommit_asyncWrites_ShouldBeOnDiskAfterFlush() throws IOException {
+        // Arrange
+        Path dataFile = dataDir.resolve("products.json");
+        ProductRepository repository = new ProductRepository();
+        ReflectionTestUtils.setField(repository, "defaultProductDataPath", dataFile.toString());
+        ReflectionTestUtils.setField(repository, "durability", Durability.ASYNC);
+        ReflectionTestUtils.setField(repository, "groupCommitIntervalMs", 20L);
+
+        // Act
+        for (int i = 0; i < 50; i++) {
+            repository.addProduct(new Product("Item " + i, i));
+        }
+        repository.flush();
+
+        // Assert
+        assertEquals(50, repository.getProducts().size());
+        assertEquals(50, journaledRepository(dataFile).getProducts().size());
+    }
+
+    @Test
+    void groupCommit_diskKeepsFailing_ShouldTimeOutInsteadOfWaitingForever() {
+        // Arrange
+        ProductRepository repository = new ProductRepository();
+        ReflectionTestUtils.setField(repository, "defaultProductDataPath",
+                dataDir.resolve("missing").resolve("products.json").toString());
+        ReflectionTestUtils.setField(repository, "writeTimeoutMs", 200L);
+
+        // Act & Assert
+        try {
+            assertThrows(WriteTimeoutException.class, () -> repository.addProduct(new Product("Pen", 2.0)));
+            assertNotNull(repository.getProducts().get(0), "The write should stay in memory to be retried");
+        } finally {
+            assertThrows(WriteTimeoutException.class, repository::close);
+        }
+        assertThrows(IllegalStateException.class, () -> repository.addProduct(new Product("Bag", 40.0)),
+                "A closed repository should not accept writes");
+    }
+
+    @Test
+    void stripedLocks_concurrentAddsToSameCart_ShouldNotLoseUpdates() throws Exception {
+        // Arrange
+        CartRepository repository = new CartRepository();
+        ReflectionTestUtils.setField(repository, "defaultCartDataPath", dataDir.resolve("carts.json").toString());
+        ReflectionTestUtils.setField(repository, "durability", Durability.BATCHED);
+        ReflectionTestUtils.setField(repository, "groupCommitIntervalMs", 1L);
+        Cart shared = new Cart(UUID.randomUUID(), new ArrayList<>());
+        Cart other = new Cart(UUID.randomUUID(), new ArrayList<>());
+        repository.addCart(shared);
+        repository.addCart(other);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // Act
+        List<Future<?>> writes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            UUID cartId = i % 4 == 0 ? other.getId() : shared.getId();
+            writes.add(executor.submit(() -> repository.addProductToCart(cartId, new Product("Item", 1.0))));
+        }
+        for (Future<?> write : writes) {
+            write.get();
+        }
+        executor.shutdown();
+
+        // Assert
+        assertEquals(75, repository.getCartById(shared.getId()).getProducts().size());
+        assertEquals(25, repository.getCartById(other.getId()).getProducts().size());
+    }
+
+    @Test
+    void addCart_cartWithProducts_ShouldStoreOnlyLines() throws IOException {
+        // Arrange
+        Path dataFile = dataDir.resolve("carts.json");
+        CartRepository repository = new CartRepository();
+        ReflectionTestUtils.setField(repository, "defaultCartDataPath", dataFile.toString());
+        Product pen = new Product("Pen", 2.0);
+        Cart cart = new Cart(UUID.randomUUID(), new ArrayList<>(List.of(pen, pen)));
+
+        // Act
+        repository.addCart(cart);
+
+        // Assert
+        String stored = Files.readString(dataFile);
+        assertTrue(stored.contains("\"lines\""), stored);
+        assertFalse(stored.contains("\"products\""), "Carts should be stored as lines only");
+        CartRepository reader = new CartRepository();
+        ReflectionTestUtils.setField(reader, "defaultCartDataPath", dataFile.toString());
+        assertEquals(2, reader.getCartById(cart.getId()).getQuantity(pen.getId()));
+    }
+
+    @Test
+    void getOrCreateCartByUserId_concurrentFirstCalls_ShouldAllGetTheSameCart() throws Exception {
+        // Arrange
+        CartRepository repository = new CartRepository();
+        ReflectionTestUtils.setField(repository, "defaultCartDataPath", dataDir.resolve("carts.json").toString());
+        UUID userId = UUID.randomUUID();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // Act
+        List<Future<Cart>> calls = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            calls.add(executor.submit(() -> repository.getOrCreateCartByUserId(userId)));
+        }
+        List<UUID> cartIds = new ArrayList<>();
+        for (Future<Cart> call : calls) {
+            cartIds.add(call.get().getId());
+        }
+        executor.shutdown();
+
+        // Assert
+        assertEquals(1, repository.getCarts().size());
+        assertTrue(cartIds.stream().allMatch(repository.getCartByUserId(userId).getId()::equals));
+    }
+
+    @Test
+    void compareAndSet_staleVersion_ShouldNotOverwrite() throws IOException {
+        // Arrange
+        ProductRepository repository = journaledRepository(dataDir.resolve("products.json"));
+        Product product = repository.addProduct(new Product("Laptop", 1200.0));
+        Product first = repository.findDetachedById(product.getId());
+        Product second = repository.findDetachedById(product.getId());
+        first.setPrice(1100.0);
+        second.setPrice(1000.0);
+
+        // Act
+        boolean firstWritten = repository.compareAndSet(first);
+        boolean secondWritten = repository.compareAndSet(second);
+
+        // Assert
+        assertTrue(firstWritten);
+        assertFalse(secondWritten, "A write based on a stale version should be rejected");
+        assertEquals(1100.0, repository.getProductById(product.getId()).getPrice());
+        assertEquals(2, repository.getProductById(product.getId()).getVersion());
+    }
+
+    @Test
+    void update_afterCompareAndSet_ShouldApplyOnLatestVersion() throws IOException {
+        // Arrange
+        ProductRepository repository = journaledRepository(dataDir.resolve("products.json"));
+        Product product = repository.addProduct(new Product("Mouse", 50.0));
+        Product detached = repository.findDetachedById(product.getId());
+        detached.setName("Wireless Mouse");
+        repository.compareAndSet(detached);
+
+        // Act
+        Product updated = repository.updateProduct(product.getId(), "Wireless Mouse", 45.0);
+
+        // Assert
+        assertEquals(3, updated.getVersion());
+        assertEquals(45.0, journaledRepository(dataDir.resolve("products.json")).getProductById(product.getId()).getPrice());
+    }
+
+    @Test
+    void addCart_secondCartForUser_ShouldBeRejected() {
+        // Arrange
+        CartRepository repository = new CartRepository();
+        ReflectionTestUtils.setField(repository, "defaultCartDataPath", dataDir.resolve("carts.json").toString());
+        UUID userId = UUID.randomUUID();
+        Cart first = new Cart(userId, new ArrayList<>());
+        Cart second = new Cart(userId, new ArrayList<>());
+        repository.addCart(first);
+
+        // Act & Assert
+        assertThrows(DuplicateKeyException.class, () -> repository.addCart(second));
+        assertEquals(first.getId(), repository.getCartByUserId(userId).getId(), "The existing cart should be kept");
+        assertNull(repository.getCartById(second.getId()), "A user should have only one cart");
+        assertEquals(1, repository.getCarts().size());
+    }
+
+    @Test
+    void findBy_afterUpdateAndDelete_ShouldReturnCurrentMatchesInOrder() throws IOException {
+        // Arrange
+        ProductRepository repository = journaledRepository(dataDir.resolve("products.json"));
+        Product first = repository.addProduct(new Product("Charger", 20.0));
+        Product renamed = repository.addProduct(new Product("Charger", 25.0));
+        Product deleted = repository.addProduct(new Product("Charger", 30.0));
+        Product last = repository.addProduct(new Product("Charger", 35.0));
+
+        // Act
+        repository.updateProduct(renamed.getId(), "Fast Charger", 25.0);
+        repository.deleteProductById(deleted.getId());
+        List<Product> chargers = journaledRepository(dataDir.resolve("products.json")).getProductsByName("Charger");
+
+        // Assert
+        assertEquals(List.of(first.getId(), last.getId()), chargers.stream().map(Product::getId).toList());
+        assertEquals(renamed.getId(), repository.getProductsByName("Fast Charger").get(0).getId());
+    }
+
+    @Test
+    void findBy_uniqueIndexViolation_ShouldRejectWrite() {
+        // Arrange
+        CartRepository repository = new CartRepository();
+        ReflectionTestUtils.setField(repository, "defaultCartDataPath", dataDir.resolve("carts.json").toString());
+        UUID userId = UUID.randomUUID();
+        repository.addCart(new Cart(userId, new ArrayList<>()));
+
+        // Act & Assert
+        assertThrows(DuplicateKeyException.class, () -> repository.save(new Cart(userId, new ArrayList<>())));
+        assertEquals(1, repository.findBy(CartRepository.BY_USER_ID, userId).size());
+    }
+
+    @Test
+    void addOrderToUser_checkout_ShouldWriteEachFileOnce() throws IOException {
+        // Arrange
+        UserRepository users = new UserRepository();
+        CartRepository carts = new CartRepository();
+        OrderRepository orders = new OrderRepository();
+        UserService userService = checkoutService(users, carts, orders);
+        User user = users.addUser(new User("Ahmed", new ArrayList<>()));
+        Product pen = new Product("Pen", 2.0);
+        carts.addCart(new Cart(user.getId(), new ArrayList<>(List.of(pen, pen))));
+        int userRecords = journalLines("users.json");
+        int cartRecords = journalLines("carts.json");
+        int orderRecords = journalLines("orders.json");
+
+        // Act
+        userService.addOrderToUser(user.getId());
+
+        // Assert
+        assertEquals(userRecords + 1, journalLines("users.json"));
+        assertEquals(cartRecords + 1, journalLines("carts.json"));
+        assertEquals(orderRecords + 1, journalLines("orders.json"));
+        assertEquals(0, journalLines("products.json"), "Reading product prices should not write");
+        assertEquals(4.0, orders.getOrdersByUserId(user.getId()).get(0).getTotalPrice());
+        assertTrue(carts.getCartByUserId(user.getId()).getLines().isEmpty());
+    }
+
+    @Test
+    void addOrderToUser_userUpdateFails_ShouldLeaveCartOrdersAndUserUnchanged() {
+        // Arrange
+        UserRepository users = new UserRepository() {
+            @Override
+            public void addOrderToUser(UUID userId, Order order) {
+                throw new IllegalStateException("Disk full");
+            }
+        };
+        CartRepository carts = new CartRepository();
+        OrderRepository orders = new OrderRepository();
+        UserService userService = checkoutService(users, carts, orders);
+        User user = users.addUser(new User("Ahmed", new ArrayList<>()));
+        Product pen = new Product("Pen", 2.0);
+        carts.addCart(new Cart(user.getId(), new ArrayList<>(List.of(pen, pen))));
+
+        // Act
+        assertThrows(IllegalStateException.class, () -> userService.addOrderToUser(user.getId()));
+
+        // Assert
+        assertEquals(2, carts.getCartByUserId(user.getId()).getQuantity(pen.getId()));
+        assertTrue(orders.getOrdersByUserId(user.getId()).isEmpty());
+        assertTrue(users.getOrderIdsByUserId(user.getId()).isEmpty());
+        UserRepository reloadedUsers = new UserRepository();
+        CartRepository reloadedCarts = new CartRepository();
+        OrderRepository reloadedOrders = new OrderRepository();
+        checkoutService(reloadedUsers, reloadedCarts, reloadedOrders);
+        assertEquals(2, reloadedCarts.getCartByUserId(user.getId()).getQuantity(pen.getId()), "The cart on disk should be unchanged");
+        assertTrue(reloadedOrders.getOrders().isEmpty(), "No order should reach the disk");
+        assertTrue(reloadedUsers.getOrderIdsByUserId(user.getId()).isEmpty());
+    }
+
+    @Test
+    void inTransaction_workCompletes_ShouldWriteEachRepositoryOnce() throws IOException {
+        // Arrange
+        ProductRepository products = journaledRepository(dataDir.resolve("products.json"));
+        CartRepository carts = new CartRepository();
+        ReflectionTestUtils.setField(carts, "defaultCartDataPath", dataDir.resolve("carts.json").toString());
+        ReflectionTestUtils.setField(carts, "journalEnabled", true);
+        TransactionManager transactionManager = new TransactionManager();
+        Cart cart = new Cart(UUID.randomUUID(), new ArrayList<>());
+
+        // Act
+        transactionManager.runInTransaction(() -> {
+            Product product = products.addProduct(new Product("Speaker", 80.0));
+            products.updateProduct(product.getId(), "Speaker", 70.0);
+            carts.addCart(cart);
+            carts.addProductToCart(cart.getId(), product);
+            assertFalse(Files.exists(dataDir.resolve("products.json.journal")), "Nothing is written before commit");
+        });
+
+        // Assert
+        assertEquals(2, Files.readAllLines(dataDir.resolve("products.json.journal")).size());
+        assertEquals(1, journaledRepository(dataDir.resolve("products.json")).getProducts().size());
+        assertEquals(1, carts.getCartById(cart.getId()).getProducts().size());
+    }
+
+    @Test
+    void inTransaction_workFails_ShouldRestoreStoresAndWriteNothing() throws IOException {
+        // Arrange
+        ProductRepository repository = journaledRepository(dataDir.resolve("products.json"));
+        Product existing = repository.addProduct(new Product("Lamp", 30.0));
+        TransactionManager transactionManager = new TransactionManager();
+        UUID addedId = UUID.randomUUID();
+
+        // Act
+        assertThrows(IllegalStateException.class, () -> transactionManager.runInTransaction(() -> {
+            repository.addProduct(new Product(addedId, "Desk", 150.0));
+            repository.updateProduct(existing.getId(), "Lamp", 10.0);
+            repository.deleteProductById(existing.getId());
+            throw new IllegalStateException("Checkout failed");
+        }));
+
+        // Assert
+        assertNull(repository.getProductById(addedId));
+        assertEquals(30.0, repository.getProductById(existing.getId()).getPrice());
+        assertEquals(30.0, journaledRepository(dataDir.resolve("products.json")).getProductById(existing.getId()).getPrice());
+        assertEquals(1, journaledRepository(dataDir.resolve("products.json")).getProducts().size());
+    }
+
+    @Test
+    void inTransaction_workFailsAfterOtherThreadChangedCart_ShouldKeepBothChanges() throws Exception {
+        // Arrange
+        CartRepository carts = new CartRepository();
+        ReflectionTestUtils.setField(carts, "defaultCartDataPath", dataDir.resolve("carts.json").toString());
+        TransactionManager transactionManager = new TransactionManager();
+        Product pen = new Product("Pen", 2.0);
+        Product book = new Product("Book", 12.0);
+        Cart cart = new Cart(UUID.randomUUID(), new ArrayList<>(List.of(pen, pen)));
+        carts.addCart(cart);
+        ExecutorService otherThread = Executors.newSingleThreadExecutor();
+
+        // Act
+        try {
+            assertThrows(IllegalStateException.class, () -> transactionManager.runInTransaction(() -> {
+                Cart emptied = new Cart(cart.getId(), cart.getUserId(), new ArrayList<>());
+                emptied.setVersion(carts.getCartById(cart.getId()).getVersion());
+                assertTrue(carts.compareAndSet(emptied));
+                try {
+                    otherThread.submit(() -> carts.addProductToCart(cart.getId(), book)).get();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+                throw new IllegalStateException("Checkout failed");
+            }));
+        } finally {
+            otherThread.shutdown();
+        }
+
+        // Assert
+        Cart restored = carts.getCartById(cart.getId());
+        assertEquals(2, restored.getQuantity(pen.getId()), "The taken products should be put back");
+        assertEquals(1, restored.getQuantity(book.getId()), "The other thread's product should be kept");
+    }
+
+    @Test
+    void findById_storeNotLoaded_ShouldReadMatchFromFile() throws IOException {
+        // Arrange
+        Path dataFile = dataDir.resolve("users.json");
+        UUID first = UUID.randomUUID();
+        UUID wanted = UUID.randomUUID();
+        Files.writeString(dataFile, "[{\"id\":\"" + first + "\",\"name\":\"Ahmed\",\"orders\":[{\"id\":\"" + wanted + "\"}]},"
+                + "{\"name\":\"Mahmoud\",\"orders\":[],\"id\":\"" + wanted + "\"},"
+                + "{\"id\":\"" + UUID.randomUUID() + "\",\"name\":\"Sara\"");
+        UserRepository repository = new UserRepository();
+        ReflectionTestUtils.setField(repository, "defaultUserDataPath", dataFile.toString());
+
+        // Act
+        User user = repository.getUserById(wanted);
+
+        // Assert
+        assertEquals("Mahmoud", user.getName(), "Nested ids must not match and the lookup must stop at the match");
+        assertEquals("Ahmed", repository.getUserById(first).getName());
+    }
+
+    @Test
+    void save_userWithEmbeddedOrders_ShouldStoreOnlyOrderIds() throws IOException {
+        // Arrange
+        Path dataFile = dataDir.resolve("users.json");
+        UUID userId = UUID.randomUUID();
+        UUID orderId = UUID.randomUUID();
+        Files.writeString(dataFile, "[{\"id\":\"" + userId + "\",\"name\":\"Ahmed\",\"orders\":[{\"id\":\"" + orderId
+                + "\",\"userId\":\"" + userId + "\",\"totalPrice\":10.0,\"products\":[{\"name\":\"Pen\",\"price\":10.0}]}]}]");
+        UserRepository repository = new UserRepository();
+        ReflectionTestUtils.setField(repository, "defaultUserDataPath", dataFile.toString());
+
+        // Act
+        User user = repository.getUserById(userId);
+        user.setName("Ahmed Ali");
+        repository.save(user);
+
+        // Assert
+        assertEquals(List.of(orderId), user.getOrderIds());
+        String stored = Files.readString(dataFile);
+        assertTrue(stored.contains("\"orders\":[\"" + orderId + "\"]"), stored);
+        assertFalse(stored.contains("totalPrice"), "Orders should not be embedded in users");
+    }
+
+    @Test
+    void getUserById_userWithNullOrders_ShouldLoadWithNoOrders() throws IOException {
+        // Arrange
+        Path dataFile = dataDir.resolve("users.json");
+        UUID userId = UUID.randomUUID();
+        Files.writeString(dataFile, "[{\"id\":\"" + userId + "\",\"name\":\"x\",\"orders\":null}]");
+        UserRepository repository = new UserRepository();
+        ReflectionTestUtils.setField(repository, "defaultUserDataPath", dataFile.toString());
+
+        // Act
+        User user = repository.getUserById(userId);
+
+        // Assert
+        assertNotNull(user);
+        assertEquals(List.of(), user.getOrderIds());
+        assertEquals(1, repository.getUsers().size());
+    }
+
+    @Test
+    void load_ordersWithSameProductSnapshot_ShouldShareOneInstance() throws IOException {
+        // Arrange
+        Path dataFile = dataDir.resolve("orders.json");
+        UUID productId = UUID.randomUUID();
+        String pen = "{\"id\":\"" + productId + "\",\"name\":\"Pen\",\"price\":2.0}";
+        String repricedPen = "{\"id\":\"" + productId + "\",\"name\":\"Pen\",\"price\":3.0}";
+        UUID userId = UUID.randomUUID();
+        Files.writeString(dataFile, "[{\"id\":\"" + UUID.randomUUID() + "\",\"userId\":\"" + userId + "\",\"totalPrice\":4.0,\"products\":[" + pen + "," + pen + "]},"
+                + "{\"id\":\"" + UUID.randomUUID() + "\",\"userId\":\"" + userId + "\",\"totalPrice\":5.0,\"products\":[" + pen + "," + repricedPen + "]}]");
+        OrderRepository repository = new OrderRepository();
+        ReflectionTestUtils.setField(repository, "defaultOrderDataPath", dataFile.toString());
+
+        // Act
+        List<Order> orders = repository.getOrders();
+        repository.addOrder(new Order(userId, 2.0, new ArrayList<>(List.of(new Product(productId, "Pen", 2.0)))));
+        Order added = repository.getOrdersByUserId(userId).get(2);
+
+        // Assert
+        Product shared = orders.get(0).getProducts().get(0);
+        assertSame(shared, orders.get(0).getProducts().get(1));
+        assertSame(shared, orders.get(1).getProducts().get(0));
+        assertNotSame(shared, orders.get(1).getProducts().get(1), "A different price is a different snapshot");
+        assertSame(shared, added.getProducts().get(0), "Stored orders should be interned too");
+    }
+
+    @Test
+    void findAllById_storeNotLoaded_ShouldReturnMatchesInRequestOrderWithMisses() throws IOException {
+        // Arrange
+        Path dataFile = dataDir.resolve("users.json");
+        UUID ahmed = UUID.randomUUID();
+        UUID sara = UUID.randomUUID();
+        UUID missing = UUID.randomUUID();
+        Files.writeString(dataFile, "[{\"id\":\"" + ahmed + "\",\"name\":\"Ahmed\",\"orders\":[]},"
+                + "{\"id\":\"" + UUID.randomUUID() + "\",\"name\":\"Mahmoud\",\"orders\":[]},"
+                + "{\"id\":\"" + sara + "\",\"name\":\"Sara\",\"orders\":[]}]");
+        UserRepository repository = new UserRepository();
+        ReflectionTestUtils.setField(repository, "defaultUserDataPath", dataFile.toString());
+
+        // Act
+        List<User> users = repository.findAllById(List.of(sara, missing, ahmed));
+
+        // Assert
+        assertEquals(3, users.size());
+        assertEquals("Sara", users.get(0).getName());
+        assertNull(users.get(1));
+        assertEquals("Ahmed", users.get(2).getName());
+    }
+
+    @Test
+    void scan_storeNotLoaded_ShouldStreamMatchesUpToLimit() throws IOException {
+        // Arrange
+        Path dataFile = dataDir.resolve("users.json");
+        UUID firstOrder = UUID.randomUUID();
+        Files.writeString(dataFile, "[{\"id\":\"" + UUID.randomUUID() + "\",\"name\":\"Ahmed\",\"orders\":[]},"
+                + "{\"id\":\"" + UUID.randomUUID() + "\",\"name\":\"Mahmoud\",\"orders\":[\"" + firstOrder + "\"]},"
+                + "{\"id\":\"" + UUID.randomUUID() + "\",\"name\":\"Sara\",\"orders\":[\"" + UUID.randomUUID() + "\"]},"
+                + "{\"id\":\"" + UUID.randomUUID() + "\",\"name\":\"Omar\",\"orders\":[\"" + UUID.randomUUID() + "\"]}]");
+        UserRepository repository = new UserRepository();
+        ReflectionTestUtils.setField(repository, "defaultUserDataPath", dataFile.toString());
+
+        // Act
+        List<String> names = repository.scan(List.of(FieldFilter.hasElements("orders", User::getOrderIds, true)),
+                User::getName, 2);
+
+        // Assert
+        assertEquals(List.of("Mahmoud", "Sara"), names);
+        assertEquals(firstOrder, repository.scan(List.of(FieldFilter.hasElements("orders", User::getOrderIds, true)),
+                user -> user.getOrderIds().get(0), 1).get(0));
+    }
+
+    @Test
+    void scan_storeLoaded_ShouldFilterResidentEntities() throws IOException {
+        // Arrange
+        ProductRepository repository = journaledRepository(dataDir.resolve("products.json"));
+        repository.addProduct(new Product("Pen", 2.0));
+        repository.addProduct(new Product("Bag", 40.0));
+        repository.addProduct(new Product("Shoes", 90.0));
+        repository.addProduct(new Product("Watch", 250.0));
+
+        // Act
+        List<String> names = repository.scan(List.of(FieldFilter.between("price", Product::getPrice, 10.0, 100.0)),
+                Product::getName, Integer.MAX_VALUE);
+
+        // Assert
+        assertEquals(List.of("Bag", "Shoes"), names);
+    }
+
+    @Test
+    void page_followingNextCursors_ShouldVisitEveryMatchOnce() throws IOException {
+        // Arrange
+        ProductRepository repository = journaledRepository(dataDir.resolve("products.json"));
+        List<Product> added = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            added.add(repository.addProduct(new Product("Item " + i, i)));
+        }
+
+        // Act
+        Page<String> first = repository.page(List.of(), Product::getName, 3, null);
+        repository.deleteProductById(added.get(2).getId());
+        Page<String> second = repository.page(List.of(), Product::getName, 3, first.next());
+        Page<String> third = repository.page(List.of(), Product::getName, 3, second.next());
+
+        // Assert
+        assertEquals(List.of("Item 0", "Item 1", "Item 2"), first.items());
+        assertEquals(List.of("Item 3", "Item 4", "Item 5"), second.items(), "A deleted cursor row should not break paging");
+        assertEquals(List.of("Item 6"), third.items());
+        assertNull(third.next());
+    }
+
+    @Test
+    void changesSince_afterWrites_ShouldReturnOnlyLatestStateAndDeletes() throws IOException {
+        // Arrange
+        ProductRepository repository = journaledRepository(dataDir.resolve("products.json"));
+        Product kept = repository.addProduct(new Product("Pen", 2.0));
+        Product removed = repository.addProduct(new Product("Bag", 40.0));
+        long since = repository.getRevision();
+        repository.updateProduct(kept.getId(), "Pen", 3.0);
+        repository.updateProduct(kept.getId(), "Fountain Pen", 4.0);
+        repository.deleteProductById(removed.getId());
+        Product added = repository.addProduct(new Product("Shoes", 90.0));
+
+        // Act
+        Changes<Product> changes = repository.changesSince(since);
+
+        // Assert
+        assertFalse(changes.fullResync());
+        assertEquals(List.of("Fountain Pen", "Shoes"), changes.upserts().stream().map(Product::getName).toList());
+        assertEquals(List.of(removed.getId()), changes.deleted());
+        assertEquals(repository.getRevision(), changes.revision());
+        assertTrue(repository.changesSince(changes.revision()).upserts().isEmpty());
+        assertEquals(added.getId(), changes.upserts().get(1).getId());
+    }
+
+    @Test
+    void changesSince_logNoLongerReachesBack_ShouldAskForFullResync() throws IOException {
+        // Arrange
+        ProductRepository repository = journaledRepository(dataDir.resolve("products.json"));
+        ReflectionTestUtils.setField(repository, "changeLogSize", 2);
+        repository.addProduct(new Product("Pen", 2.0));
+        long since = repository.getRevision();
+        repository.addProduct(new Product("Bag", 40.0));
+        repository.addProduct(new Product("Shoes", 90.0));
+        repository.addProduct(new Product("Watch", 250.0));
+
+        // Act
+        Changes<Product> changes = repository.changesSince(since);
+
+        // Assert
+        assertTrue(changes.fullResync());
+        assertEquals(4, changes.upserts().size());
+        assertTrue(changes.deleted().isEmpty());
+    }
+
+    @Test
+    void importFrom_ndjsonFeed_ShouldCommitInBatchesAndSkipDuplicatesUnchangedAndInvalid() throws IOException {
+        // Arrange
+        ProductRepository repository = journaledRepository(dataDir.resolve("products.json"));
+        Product existing = repository.addProduct(new Product("Pen", 2.0));
+        Product renamed = repository.addProduct(new Product("Bag", 40.0));
+        UUID repeated = UUID.randomUUID();
+        String feed = "{\"id\":\"" + existing.getId() + "\",\"name\":\"Pen\",\"price\":2.0}\n"
+                + "{\"id\":\"" + renamed.getId() + "\",\"name\":\"Big Bag\",\"price\":45.0}\n"
+                + "\n"
+                + "{\"id\":\"" + repeated + "\",\"name\":\"Shoes\",\"price\":80.0}\n"
+                + "{\"id\":\"" + repeated + "\",\"name\":\"Shoes\",\"price\":90.0}\n"
+                + "{\"id\":\"" + UUID.randomUUID() + "\",\"name\":\"Broken\",\"price\":-1}\n"
+                + "not json\n";
+        CatalogImportService importService = importService(repository, 2, 2);
+
+        // Act
+        ImportJob job = importService.importFrom(new ByteArrayInputStream(feed.getBytes(StandardCharsets.UTF_8)));
+
+        // Assert
+        assertEquals(ImportJob.Status.COMPLETED, job.getStatus());
+        assertEquals(6, job.getRead());
+        assertEquals(1, job.getAdded());
+        assertEquals(1, job.getUpdated());
+        assertEquals(1, job.getUnchanged());
+        assertEquals(1, job.getDuplicates());
+        assertEquals(2, job.getRejected());
+        assertEquals("Big Bag", repository.getProductById(renamed.getId()).getName());
+        assertEquals(90.0, repository.getProductById(repeated).getPrice(), "The last record of an id should win");
+        assertEquals(3, repository.getProducts().size());
+    }
+
+    @Test
+    void importFrom_recordsWithoutId_ShouldBeRejectedOnEveryRun() throws IOException {
+        // Arrange
+        ProductRepository repository = journaledRepository(dataDir.resolve("products.json"));
+        byte[] feed = ("{\"name\":\"Pen\",\"price\":2.0}\n"
+                + "{\"name\":\"Bag\",\"price\":40.0}\n").getBytes(StandardCharsets.UTF_8);
+        byte[] arrayFeed = "[{\"name\":\"Pen\",\"price\":2.0}]".getBytes(StandardCharsets.UTF_8);
+        CatalogImportService importService = importService(repository, 10, 10);
+
+        // Act
+        ImportJob first = importService.importFrom(new ByteArrayInputStream(feed));
+        ImportJob second = importService.importFrom(new ByteArrayInputStream(arrayFeed));
+
+        // Assert
+        assertEquals(2, first.getRejected());
+        assertEquals(1, second.getRejected());
+        assertEquals(0, first.getAdded() + second.getAdded());
+        assertTrue(repository.getProducts().isEmpty(), "Records without an id should not be added");
+    }
+
+    @Test
+    void importFrom_jsonArrayFeed_ShouldAddEveryProduct() throws IOException {
+        // Arrange
+        ProductRepository repository = journaledRepository(dataDir.resolve("products.json"));
+        StringBuilder feed = new StringBuilder("[");
+        for (int i = 0; i < 25; i++) {
+            feed.append(i == 0 ? "" : ",").append("{\"id\":\"").append(UUID.randomUUID())
+                    .append("\",\"name\":\"Item ").append(i).append("\",\"price\":").append(i).append("}");
+        }
+        feed.append("]");
+        CatalogImportService importService = importService(repository, 10, 3);
+
+        // Act
+        ImportJob job = importService.importFrom(new ByteArrayInputStream(feed.toString().getBytes(StandardCharsets.UTF_8)));
+
+        // Assert
+        assertEquals(ImportJob.Status.COMPLETED, job.getStatus());
+        assertEquals(25, job.getAdded());
+        assertEquals(3, job.getBatches());
+        assertEquals("Item 24", repository.getProducts().get(24).getName(), "Products should be committed in feed order");
+    }
+
+    @Test
+    void uuidModule_roundTrip_ShouldMatchJacksonDefault() throws IOException {
+        // Arrange
+        ObjectMapper plain = new ObjectMapper();
+        ObjectMapper module = new ObjectMapper().registerModule(new UuidModule());
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            ids.add(UUID.randomUUID());
+        }
+        ids.add(new UUID(0L, 0L));
+        ids.add(new UUID(-1L, -1L));
+        UUID id = UUID.randomUUID();
+
+        // Act
+        String json = module.writeValueAsString(ids);
+        List<UUID> read = List.of(module.readValue(json, UUID[].class));
+
+        // Assert
+        assertEquals(plain.writeValueAsString(ids), json);
+        assertEquals(ids, read);
+        assertEquals(id, module.readValue("\"" + id.toString().toUpperCase() + "\"", UUID.class));
+        assertThrows(IOException.class, () -> module.readValue("\"not-a-uuid\"", UUID.class));
+    }
+}
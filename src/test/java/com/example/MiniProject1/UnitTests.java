@@ -1,10 +1,13 @@
 package com.example.MiniProject1;
 
+import com.example.exceptions.DuplicateKeyException;
 import com.example.exceptions.order.OrderNotFoundException;
 import com.example.model.Cart;
+import com.example.model.IdGenerator;
 import com.example.model.Order;
 import com.example.model.Product;
 import com.example.model.User;
+import com.example.model.UuidV7Generator;
 import com.example.service.CartService;
 import com.example.service.OrderService;
 import com.example.service.ProductService;
@@ -19,7 +22,7 @@ import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-@SpringBootTest
+@SpringBootTest(properties = "spring.application.fileCheckIntervalMs=0")
 class UnitTests {
 
     @Autowired
@@ -227,6 +230,23 @@ class UnitTests {
     }
      */
 
+    @Test
+    void addOrder_productAlsoInCart_ShouldShareOneSnapshot() throws Exception {
+        // Arrange
+        Product pen = new Product("Pen", 2.0);
+        Cart cart = new Cart(UUID.randomUUID(), List.of(pen));
+        Order order = new Order(UUID.randomUUID(), 2.0, new ArrayList<>(List.of(pen)));
+
+        // Act
+        cartService.addCart(cart);
+        orderService.addOrder(order);
+
+        // Assert
+        Product inCart = cartService.getCartById(cart.getId()).getLines().iterator().next().getProduct();
+        Product inOrder = orderService.getOrderById(order.getId()).getProducts().get(0);
+        assertSame(inCart, inOrder, "Carts and orders should share product snapshots");
+    }
+
     @Test
     void addOrderToUser_validCart_shouldCreateOrder() {
         // Arrange
@@ -578,7 +598,8 @@ class UnitTests {
         Cart user2Cart = new Cart(UUID.randomUUID(), userId2, new ArrayList<>());
 
         cartService.addCart(user1Cart1);
-        cartService.addCart(user1Cart2);
+        assertThrows(DuplicateKeyException.class, () -> cartService.addCart(user1Cart2),
+                "A user should have only one cart");
         cartService.addCart(user2Cart);
 
         // Act
@@ -619,7 +640,7 @@ class UnitTests {
     void getCartById_MultipleCarts_ReturnCorrectCart() {
         // Arrange
         UUID userId = UUID.randomUUID();
-        Cart firstCart = new Cart(UUID.randomUUID(), userId, new ArrayList<>());
+        Cart firstCart = new Cart(UUID.randomUUID(), UUID.randomUUID(), new ArrayList<>());
         Cart secondCart = new Cart(UUID.randomUUID(), userId, new ArrayList<>());
 
         cartService.addCart(firstCart);
@@ -773,6 +794,44 @@ class UnitTests {
         assertFalse(updatedCart.getProducts().contains(product), "The product should be removed from the cart.");
     }
 
+    @Test
+    void addProductToCart_SameProductTwice_IncreaseQuantity() {
+        // Arrange
+        UUID cartId = UUID.randomUUID();
+        cartService.addCart(new Cart(cartId, UUID.randomUUID(), new ArrayList<>()));
+        Product product = new Product(UUID.randomUUID(), "Keyboard", 100.00);
+
+        // Act
+        cartService.addProductToCart(cartId, product);
+        cartService.addProductToCart(cartId, product);
+
+        // Assert
+        Cart updatedCart = cartService.getCartById(cartId);
+        assertEquals(1, updatedCart.getLines().size(), "The same product should stay on one line.");
+        assertEquals(2, updatedCart.getQuantity(product.getId()));
+        assertEquals(2, updatedCart.getProducts().size());
+    }
+
+    @Test
+    void setProductQuantity_ProductInCart_UpdateOrRemoveLine() {
+        // Arrange
+        UUID cartId = UUID.randomUUID();
+        Product product = new Product(UUID.randomUUID(), "Monitor", 300.00);
+        cartService.addCart(new Cart(cartId, UUID.randomUUID(), List.of(product)));
+
+        // Act
+        boolean updated = cartService.setProductQuantity(cartId, product.getId(), 5);
+        int quantity = cartService.getCartById(cartId).getQuantity(product.getId());
+        boolean removed = cartService.setProductQuantity(cartId, product.getId(), 0);
+
+        // Assert
+        assertTrue(updated);
+        assertEquals(5, quantity);
+        assertTrue(removed);
+        assertTrue(cartService.getCartById(cartId).getLines().isEmpty(), "A zero quantity should remove the line.");
+        assertFalse(cartService.setProductQuantity(cartId, product.getId(), 1), "A product not in the cart cannot be updated.");
+    }
+
     @Test
     void deleteProductFromCart_NonExistingCart_ThrowException() {
         // Arrange
@@ -1316,4 +1375,31 @@ class UnitTests {
         assertNotNull(productService.getProductById(product2.getId()),
                 "Other products should not be affected.");
     }
+
+    // Id generation tests
+
+    @Test
+    void uuidV7Generator_manyIds_ShouldBeVersion7AndStrictlyIncreasing() {
+        // Arrange
+        IdGenerator generator = new UuidV7Generator();
+        long before = System.currentTimeMillis();
+
+        // Act
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            ids.add(generator.next());
+        }
+
+        // Assert
+        for (int i = 0; i < ids.size(); i++) {
+            UUID id = ids.get(i);
+            assertEquals(7, id.version());
+            assertEquals(2, id.variant());
+            if (i > 0) {
+                assertTrue(Long.compareUnsigned(ids.get(i - 1).getMostSignificantBits(), id.getMostSignificantBits()) < 0,
+                        "Ids should be strictly increasing");
+            }
+        }
+        assertTrue((ids.get(0).getMostSignificantBits() >>> 16) >= before, "Ids should start with the current time");
+    }
 }
@@ -0,0 +1,61 @@
+package com.example.MiniProject1;
+
+import com.example.repository.UuidModule;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+
+/**
+ * Compares writing and reading an array of UUIDs with Jackson's own UUID
+ * handling and with {@link UuidModule}: time per pass and bytes allocated
+ * per UUID. Not a test; run its main method directly, optionally with the
+ * number of UUIDs as the first argument.
+ */
+public class UuidCodecBenchmark {
+
+    private static final int WARMUP_PASSES = 20;
+    private static final int MEASURED_PASSES = 20;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        UUID[] ids = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = UUID.randomUUID();
+        }
+        run("jackson", new ObjectMapper(), ids);
+        run("uuid-module", new ObjectMapper().registerModule(new UuidModule()), ids);
+    }
+
+    private static void run(String name, ObjectMapper mapper, UUID[] ids) throws Exception {
+        byte[] json = mapper.writeValueAsBytes(ids);
+        for (int i = 0; i < WARMUP_PASSES; i++) {
+            mapper.writeValueAsBytes(ids);
+            mapper.readValue(json, UUID[].class);
+        }
+
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_PASSES; i++) {
+            mapper.writeValueAsBytes(ids);
+        }
+        report(name, "write", ids.length, System.nanoTime() - start, allocatedBytes() - bytes);
+
+        bytes = allocatedBytes();
+        start = System.nanoTime();
+        for (int i = 0; i < MEASURED_PASSES; i++) {
+            mapper.readValue(json, UUID[].class);
+        }
+        report(name, "read", ids.length, System.nanoTime() - start, allocatedBytes() - bytes);
+    }
+
+    private static void report(String name, String operation, int count, long nanos, long bytes) {
+        System.out.printf("%-12s %-5s %8.2f ms/pass %8.1f bytes/uuid%n", name, operation,
+                nanos / 1e6 / MEASURED_PASSES, (double) bytes / MEASURED_PASSES / count);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}